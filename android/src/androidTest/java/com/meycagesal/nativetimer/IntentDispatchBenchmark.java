@@ -0,0 +1,77 @@
+package com.meycagesal.nativetimer;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Parcel;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * 🏎️ Microbenchmarks en dispositivo (androidx.benchmark: ns/op y allocs/op en el informe JSON).
+ *
+ * Complementan a HotPathBenchmark (JVM del host) con lo que necesita el framework real:
+ * el empaquetado del Intent de arranque en frío a través de un Parcel, como lo cruzaría
+ * startForegroundService, y el formateo medido en ART.
+ *   ./gradlew connectedDebugAndroidTest \
+ *       -Pandroid.testInstrumentationRunnerArguments.class=com.meycagesal.nativetimer.IntentDispatchBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class IntentDispatchBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private static TimerStartRequest sampleRequest() {
+        TimerStartRequest request = new TimerStartRequest();
+        request.timerId = "default";
+        request.startTime = 1_760_000_000_000L;
+        request.title = "Jornada laboral";
+        request.primaryColor = "#0045a5";
+        request.localeTag = TimeFormatter.DEFAULT_LOCALE_TAG;
+        request.startTimePattern = TimeFormatter.DEFAULT_START_PATTERN;
+        request.rules = TimerRules.of(8 * 60 * 60 * 1000L, 0, 0, 0);
+        return request;
+    }
+
+    @Test
+    public void startIntentRoundTrip() {
+        Context context = ApplicationProvider.getApplicationContext();
+        TimerStartRequest request = sampleRequest();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Intent intent = new Intent(context, NativeTimerService.class);
+            request.writeTo(intent);
+            Parcel parcel = Parcel.obtain();
+            intent.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            Intent received = Intent.CREATOR.createFromParcel(parcel);
+            parcel.recycle();
+            TimerStartRequest.fromIntent(received);
+        }
+    }
+
+    @Test
+    public void formatElapsedSameMinute() {
+        TimeFormatter formatter = new TimeFormatter();
+        long elapsed = 5 * 60 * 60 * 1000L;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            formatter.formatElapsed(elapsed);
+        }
+    }
+
+    @Test
+    public void parseColor() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ColorParser.parse("#0045a5");
+        }
+    }
+}
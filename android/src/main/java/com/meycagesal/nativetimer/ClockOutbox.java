@@ -0,0 +1,457 @@
+package com.meycagesal.nativetimer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * 📮 Outbox nativo de eventos de fichaje (start/stop/pause/resume).
+ *
+ * Cada evento se persiste (append + fsync) antes de intentar enviarlo, así que sobrevive
+ * a la muerte de la WebView o del proceso. Los envíos se agrupan: un evento programa un
+ * flush tras {@link #COALESCE_DELAY_MS} y todo lo que llegue en esa ventana viaja en el
+ * mismo POST. Cada evento lleva una clave de idempotencia estable entre reintentos; los
+ * fallos reintentan con backoff exponencial. Un 401/403 conserva el lote y detiene el envío
+ * hasta que configure traiga cabeceras nuevas; solo un 400/422 (el servidor rechaza el
+ * contenido) descarta el lote. Todo el I/O corre en un HandlerThread propio.
+ * La cola tiene un tope ({@link #MAX_QUEUE_SIZE}): sin endpoint o con el backend caído
+ * mucho tiempo se descartan los eventos más antiguos.
+ */
+final class ClockOutbox {
+
+    private static final String TAG = "ClockOutbox";
+    private static final String OUTBOX_FILE = "native_timer_outbox.bin";
+    private static final String PREFS_NAME = "native_timer_sync";
+
+    static final String EVENT_START = "start";
+    static final String EVENT_STOP = "stop";
+    static final String EVENT_PAUSE = "pause";
+    static final String EVENT_RESUME = "resume";
+
+    private static final long COALESCE_DELAY_MS = 2000;
+    private static final long BASE_BACKOFF_MS = 5000;
+    private static final long MAX_BACKOFF_MS = 15 * 60 * 1000;
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int TIMEOUT_MS = 15000;
+    static final int MAX_QUEUE_SIZE = 2000;
+
+    private static ClockOutbox instance;
+
+    private final File file;
+    private final SharedPreferences prefs;
+    private final Handler worker;
+    private final Random jitter = new Random();
+    private final Runnable flushRunnable = this::flush;
+
+    // Solo se tocan desde el hilo del worker
+    private final ArrayDeque<ClockEvent> pending = new ArrayDeque<>();
+    private FileOutputStream out;
+    private boolean flushScheduled = false;
+    private long nextAttemptAt = 0; // elapsedRealtime
+    private String endpoint;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    // Estado para getSyncStatus (lectura desde otros hilos)
+    private volatile int queueDepth = 0;
+    private volatile long lastFlushLatencyMs = -1;
+    private volatile long lastSuccessAt = 0; // Reloj de pared
+    private volatile int consecutiveFailures = 0;
+    private volatile String lastError;
+    private volatile long droppedEvents = 0; // Descartados por el tope de la cola o rechazados por el servidor
+    private volatile boolean awaitingCredentials = false; // 401/403: sin envíos hasta el próximo configure
+
+    static synchronized ClockOutbox getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            instance = new ClockOutbox(new File(app.getFilesDir(), OUTBOX_FILE),
+                    app.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    private ClockOutbox(File file, SharedPreferences prefs) {
+        this(file, prefs, newWorker());
+    }
+
+    /**
+     * @param worker Handler que ejecuta todo el I/O; los tests pasan uno del main Looper
+     */
+    ClockOutbox(File file, SharedPreferences prefs, Handler worker) {
+        this.file = file;
+        this.prefs = prefs;
+        this.worker = worker;
+        worker.post(this::load);
+    }
+
+    private static Handler newWorker() {
+        HandlerThread thread = new HandlerThread("NativeTimerOutbox", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        return new Handler(thread.getLooper());
+    }
+
+    /**
+     * Encola un evento de fichaje. No bloquea: la escritura y el envío van al worker
+     */
+    void enqueue(String type, String timerId, long timestamp) {
+        ClockEvent event = new ClockEvent(UUID.randomUUID().toString(), type, timerId, timestamp);
+        worker.post(() -> {
+            pending.add(event);
+            if (dropOverflow() > 0) {
+                // Los eventos descartados siguen en el fichero: reescribirlo entero (incluye el nuevo)
+                rewriteFile();
+            } else {
+                try {
+                    if (out == null) {
+                        out = new FileOutputStream(file, true);
+                    }
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+                    event.writeTo(new DataOutputStream(bytes));
+                    bytes.writeTo(out);
+                    out.getFD().sync();
+                } catch (IOException e) {
+                    TimerLog.w(TAG, "Error persisting event, keeping it in memory", "type", type, e);
+                }
+            }
+            queueDepth = pending.size();
+            scheduleFlush(COALESCE_DELAY_MS);
+        });
+    }
+
+    /**
+     * Configura (o desactiva, con endpoint null) el envío. Los eventos se siguen encolando sin endpoint.
+     * 🔐 Las cabeceras (p.ej. Authorization) solo se guardan en memoria: tras reiniciar el proceso
+     * no se envía nada hasta que JS vuelva a llamar a configureSync con ellas.
+     */
+    void configure(String endpoint, Map<String, String> headers, int batchSize) {
+        prefs.edit()
+                .putString("endpoint", endpoint)
+                .putBoolean("requiresHeaders", !headers.isEmpty())
+                .putInt("batchSize", batchSize)
+                .remove("headers")
+                .apply();
+
+        worker.post(() -> {
+            applyConfig(endpoint, headers, batchSize);
+            // Configuración nueva: reintentar ya, sin esperar al backoff anterior. El flush
+            // ya programado puede ser el del backoff, así que se cancela y se reprograma
+            nextAttemptAt = 0;
+            consecutiveFailures = 0;
+            awaitingCredentials = false;
+            worker.removeCallbacks(flushRunnable);
+            flushScheduled = false;
+            scheduleFlush(0);
+        });
+    }
+
+    int getQueueDepth() {
+        return queueDepth;
+    }
+
+    long getLastFlushLatencyMs() {
+        return lastFlushLatencyMs;
+    }
+
+    long getLastSuccessAt() {
+        return lastSuccessAt;
+    }
+
+    int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    String getLastError() {
+        return lastError;
+    }
+
+    long getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    boolean isAwaitingCredentials() {
+        return awaitingCredentials;
+    }
+
+    private void load() {
+        String savedEndpoint = prefs.getString("endpoint", null);
+        // Versiones anteriores guardaban las cabeceras en claro: borrarlas
+        boolean requiresHeaders = prefs.getBoolean("requiresHeaders", prefs.contains("headers"));
+        if (prefs.contains("headers")) {
+            prefs.edit().remove("headers").putBoolean("requiresHeaders", requiresHeaders).apply();
+        }
+        if (requiresHeaders) {
+            // Sin las credenciales el backend rechazaría (y se descartarían) los lotes: esperar a configure
+            TimerLog.i(TAG, "Sync paused until configureSync provides the headers again");
+            savedEndpoint = null;
+        }
+        applyConfig(savedEndpoint, new LinkedHashMap<>(), prefs.getInt("batchSize", DEFAULT_BATCH_SIZE));
+
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                while (true) {
+                    pending.add(ClockEvent.readFrom(in));
+                    dropOverflow();
+                }
+            } catch (EOFException e) {
+                // Fin del fichero (o registro truncado por un crash): se descarta la cola parcial
+            } catch (IOException e) {
+                TimerLog.w(TAG, "Error reading outbox", e);
+            }
+            // Reescribir sin una posible cola truncada para que los appends sigan alineados
+            rewriteFile();
+        }
+        queueDepth = pending.size();
+        if (!pending.isEmpty()) {
+            TimerLog.i(TAG, "Outbox restored", "pending", pending.size());
+            scheduleFlush(0);
+        }
+    }
+
+    /**
+     * Descarta los eventos más antiguos por encima de {@link #MAX_QUEUE_SIZE}. @return cuántos
+     */
+    private int dropOverflow() {
+        int dropped = 0;
+        while (pending.size() > MAX_QUEUE_SIZE) {
+            pending.poll();
+            dropped++;
+        }
+        if (dropped > 0) {
+            droppedEvents += dropped;
+            TimerLog.w(TAG, "Outbox full, dropped oldest events", "dropped", dropped);
+        }
+        return dropped;
+    }
+
+    private void applyConfig(String endpoint, Map<String, String> headers, int batchSize) {
+        this.endpoint = endpoint;
+        this.headers.clear();
+        this.headers.putAll(headers);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        worker.postDelayed(flushRunnable, delayMs);
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        if (endpoint == null || awaitingCredentials || pending.isEmpty()) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (now < nextAttemptAt) {
+            scheduleFlush(nextAttemptAt - now);
+            return;
+        }
+
+        List<ClockEvent> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<ClockEvent> iterator = pending.iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            batch.add(iterator.next());
+        }
+
+        long started = SystemClock.elapsedRealtime();
+        int status;
+        try {
+            status = post(batch);
+        } catch (IOException | JSONException e) {
+            onFlushFailed("network: " + e.getMessage());
+            return;
+        } finally {
+            lastFlushLatencyMs = SystemClock.elapsedRealtime() - started;
+        }
+
+        if (status >= 200 && status < 300) {
+            dropBatch(batch.size());
+            consecutiveFailures = 0;
+            lastError = null;
+            lastSuccessAt = System.currentTimeMillis();
+            TimerLog.d(TAG, "📮 Flushed", "events", batch.size(), "latencyMs", lastFlushLatencyMs);
+            if (!pending.isEmpty()) {
+                scheduleFlush(0);
+            }
+        } else if (status == 401 || status == 403) {
+            // Token caducado o revocado: reintentar con las mismas cabeceras no sirve, pero el
+            // lote es válido. Se conserva y el envío espera a que configure traiga otras
+            consecutiveFailures++;
+            lastError = "http " + status;
+            awaitingCredentials = true;
+            TimerLog.w(TAG, "Outbox paused until configureSync provides new headers", "status", status);
+        } else if (status == 400 || status == 422) {
+            // El servidor rechaza el contenido del lote: reintentarlo no lo va a arreglar
+            TimerLog.e(TAG, "Outbox batch rejected, dropping it", "status", status, "events", batch.size());
+            droppedEvents += batch.size();
+            dropBatch(batch.size());
+            lastError = "http " + status;
+            if (!pending.isEmpty()) {
+                scheduleFlush(0);
+            }
+        } else {
+            // 5xx, 408, 429 y el resto de 4xx (p.ej. 404 por un endpoint mal configurado): backoff
+            onFlushFailed("http " + status);
+        }
+    }
+
+    private int post(List<ClockEvent> batch) throws IOException, JSONException {
+        JSONArray events = new JSONArray();
+        for (ClockEvent event : batch) {
+            JSONObject json = new JSONObject();
+            json.put("key", event.key);
+            json.put("type", event.type);
+            json.put("id", event.timerId);
+            json.put("timestamp", event.timestamp);
+            events.put(json);
+        }
+        JSONObject body = new JSONObject();
+        body.put("events", events);
+        byte[] payload = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(endpoint).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(payload.length);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            // Mismo lote tras un reintento => misma clave (la del primer evento + tamaño)
+            connection.setRequestProperty("Idempotency-Key", batch.get(0).key + "/" + batch.size());
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            try (OutputStream requestBody = connection.getOutputStream()) {
+                requestBody.write(payload);
+            }
+            int status = connection.getResponseCode();
+            // Consumir la respuesta para poder reutilizar la conexión keep-alive
+            InputStream response = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (response != null) {
+                byte[] discard = new byte[512];
+                while (response.read(discard) >= 0) {
+                    // descartar
+                }
+                response.close();
+            }
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void onFlushFailed(String error) {
+        consecutiveFailures++;
+        lastError = error;
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(consecutiveFailures - 1, 10));
+        backoff += jitter.nextInt((int) (backoff / 5) + 1); // +0-20% para no sincronizar reintentos
+        nextAttemptAt = SystemClock.elapsedRealtime() + backoff;
+        TimerLog.w(TAG, "Outbox flush failed", "error", error, "retryInMs", backoff);
+        scheduleFlush(backoff);
+    }
+
+    /**
+     * Quita los eventos enviados y reescribe el fichero con los pendientes
+     */
+    private void dropBatch(int count) {
+        for (int i = 0; i < count; i++) {
+            pending.poll();
+        }
+        queueDepth = pending.size();
+        rewriteFile();
+    }
+
+    private void rewriteFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                TimerLog.w(TAG, "Error closing outbox", e);
+            }
+            out = null;
+        }
+        if (pending.isEmpty()) {
+            if (file.exists() && !file.delete()) {
+                TimerLog.w(TAG, "Could not delete empty outbox");
+            }
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream tmpOut = new FileOutputStream(tmp)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(pending.size() * 64);
+            DataOutputStream data = new DataOutputStream(bytes);
+            for (ClockEvent event : pending) {
+                event.writeTo(data);
+            }
+            bytes.writeTo(tmpOut);
+            tmpOut.getFD().sync();
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error rewriting outbox", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Evento de fichaje pendiente de envío
+     */
+    private static final class ClockEvent {
+        final String key;
+        final String type;
+        final String timerId;
+        final long timestamp;
+
+        ClockEvent(String key, String type, String timerId, long timestamp) {
+            this.key = key;
+            this.type = type;
+            this.timerId = timerId;
+            this.timestamp = timestamp;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeUTF(key);
+            out.writeUTF(type);
+            out.writeUTF(timerId);
+            out.writeLong(timestamp);
+        }
+
+        static ClockEvent readFrom(DataInputStream in) throws IOException {
+            return new ClockEvent(in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+        }
+    }
+}
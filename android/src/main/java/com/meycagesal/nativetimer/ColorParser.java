@@ -0,0 +1,44 @@
+package com.meycagesal.nativetimer;
+
+/**
+ * 🎨 Parseo de colores hex ("#RRGGBB", "#AARRGGBB", con o sin '#') en Java puro.
+ *
+ * Sustituye a android.graphics.Color.parseColor en el camino de render: no concatena
+ * el '#' que falta, no lanza excepciones para entradas inválidas y no depende del
+ * framework, así que se puede medir en una JVM de escritorio.
+ */
+final class ColorParser {
+
+    /** Resultado para entradas que no son un color hex válido */
+    static final long INVALID = -1L;
+
+    private ColorParser() {
+    }
+
+    /**
+     * @return el color ARGB en los 32 bits bajos, o {@link #INVALID}
+     */
+    static long parse(String hexColor) {
+        if (hexColor == null) {
+            return INVALID;
+        }
+        int start = hexColor.startsWith("#") ? 1 : 0;
+        int digits = hexColor.length() - start;
+        if (digits != 6 && digits != 8) {
+            return INVALID;
+        }
+
+        long value = 0;
+        for (int i = start; i < hexColor.length(); i++) {
+            int nibble = Character.digit(hexColor.charAt(i), 16);
+            if (nibble < 0) {
+                return INVALID;
+            }
+            value = (value << 4) | nibble;
+        }
+        if (digits == 6) {
+            value |= 0xFF000000L; // Opaco, igual que Color.parseColor
+        }
+        return value;
+    }
+}
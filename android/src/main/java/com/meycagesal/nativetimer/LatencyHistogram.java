@@ -0,0 +1,98 @@
+package com.meycagesal.nativetimer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 📊 Histograma de latencias sin locks, en microsegundos.
+ *
+ * Buckets log-lineales: cada potencia de 2 se parte en {@link #SUB_BUCKETS} tramos, así que
+ * un percentil se conoce con un error relativo máximo del 25%. Registrar es un par de
+ * incrementos atómicos sobre arrays primitivos, sin asignaciones.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_OCTAVE = 40; // ~12 días en µs: de sobra
+    private static final int BUCKETS = (MAX_OCTAVE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        long currentMax;
+        while (micros > (currentMax = max.get())) {
+            if (max.compareAndSet(currentMax, micros)) {
+                break;
+            }
+        }
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMaxMicros() {
+        return max.get();
+    }
+
+    /**
+     * Percentil aproximado (límite superior del bucket), q en [0, 1]
+     */
+    long percentileMicros(double q) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros; // Valores pequeños: un bucket por valor
+        }
+        int octave = 63 - Long.numberOfLeadingZeros(micros);
+        if (octave > MAX_OCTAVE) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (octave - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (octave - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int octave = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long base = 1L << octave;
+        long width = base >>> SUB_BUCKET_BITS;
+        return base + (sub + 1) * width - 1;
+    }
+}
@@ -1,5 +1,6 @@
 package com.meycagesal.nativetimer;
 
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
@@ -7,10 +8,24 @@ import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
 import android.Manifest;
+import android.content.ComponentName;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.os.Build;
-import android.util.Log;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import androidx.core.app.NotificationManagerCompat;
 import androidx.core.content.ContextCompat;
@@ -19,13 +34,55 @@ import androidx.core.content.ContextCompat;
 public class NativeTimerPlugin extends Plugin {
     
     private static final String TAG = "NativeTimerPlugin";
+    private static final String TIMER_UPDATE_EVENT = "timerUpdate";
+    private static final String TIMER_THRESHOLD_EVENT = "timerThreshold";
+    
+    // Instancia viva del plugin a la que el servicio publica los ticks
+    private static volatile NativeTimerPlugin liveInstance;
+    
+    private final Map<String, EmittedEvent> lastEvents = new HashMap<>();
+    private volatile long minEventIntervalMs = 0;
+    // Emisión diferida del último cambio retenido por el intervalo mínimo
+    private final Handler trailingHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean webViewPaused = false;
+    private final TimeFormatter resumeFormatter = new TimeFormatter();
+    
+    // Servicio enlazado en proceso; los Intents quedan solo para el arranque en frío
+    private volatile NativeTimerService boundService;
+    private volatile boolean appInForeground = true;
+    
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            NativeTimerService service = ((NativeTimerService.LocalBinder) binder).getService();
+            boundService = service;
+            TimerLog.d(TAG, "NativeTimerService bound");
+            service.setAppForegroundState(appInForeground);
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            boundService = null;
+            TimerLog.d(TAG, "NativeTimerService unbound");
+        }
+    };
+
+    /**
+     * Servicio enlazado si existe y sigue vivo (un enlace sin BIND_AUTO_CREATE puede
+     * sobrevivir a onDestroy hasta que el servicio se vuelva a crear)
+     */
+    private NativeTimerService getBoundService() {
+        NativeTimerService service = boundService;
+        return service != null && service.isAlive() ? service : null;
+    }
 
     @PluginMethod
     public void startTimer(PluginCall call) {
-        Log.d(TAG, "startTimer called");
+        long requestedAtNanos = System.nanoTime();
+        TimerLog.d(TAG, "startTimer called");
 
         if (!hasNotificationPermission()) {
-            Log.w(TAG, "startTimer blocked: notification permission not granted");
+            TimerLog.w(TAG, "startTimer blocked: notification permission not granted");
             JSObject result = new JSObject();
             result.put("success", false);
             result.put("error", "notification_permission_required");
@@ -33,24 +90,25 @@ public class NativeTimerPlugin extends Plugin {
             return;
         }
 
-        Long startTime = call.getLong("startTime");
-        String title = call.getString("title", "Timer activo");
-        String body = call.getString("body", "00:00:00");
-        String primaryColor = call.getString("primaryColor", "#0045a5"); // Color por defecto
-        
-        if (startTime == null) {
-            startTime = System.currentTimeMillis();
-        }
+        TimerStartRequest request = buildStartRequest(call.getData());
+        request.requestedAtNanos = requestedAtNanos;
 
-        Log.d(TAG, "Starting timer with color: " + primaryColor);
+        TimerLog.d(TAG, "Starting timer", "id", request.timerId, "primaryColor", request.primaryColor);
 
         try {
+            NativeTimerService service = getBoundService();
+            if (service != null) {
+                service.startTimer(request);
+                
+                JSObject result = new JSObject();
+                result.put("success", true);
+                call.resolve(result);
+                return;
+            }
+            
+            // Arranque en frío: el servicio aún no existe
             Intent serviceIntent = new Intent(getContext(), NativeTimerService.class);
-            serviceIntent.putExtra("startTime", startTime);
-            serviceIntent.putExtra("title", title);
-            serviceIntent.putExtra("body", body);
-            serviceIntent.putExtra("primaryColor", primaryColor);
-            serviceIntent.putExtra("action", "START_TIMER");
+            request.writeTo(serviceIntent);
             
             getContext().startForegroundService(serviceIntent);
             
@@ -58,7 +116,7 @@ public class NativeTimerPlugin extends Plugin {
             result.put("success", true);
             call.resolve(result);
         } catch (Exception e) {
-            Log.e(TAG, "Error starting timer service", e);
+            TimerLog.e(TAG, "Error starting timer service", e);
             JSObject result = new JSObject();
             result.put("success", false);
             result.put("error", e.getMessage());
@@ -68,18 +126,108 @@ public class NativeTimerPlugin extends Plugin {
 
     @PluginMethod
     public void stopTimer(PluginCall call) {
-        Log.d(TAG, "stopTimer called");
+        TimerLog.d(TAG, "stopTimer called");
+        
+        String id = call.getString("id");
         
         try {
+            NativeTimerService service = getBoundService();
+            if (service != null) {
+                service.stopTimer(id);
+                
+                JSObject result = new JSObject();
+                result.put("success", true);
+                call.resolve(result);
+                return;
+            }
+            
             Intent serviceIntent = new Intent(getContext(), NativeTimerService.class);
             serviceIntent.putExtra("action", "STOP_TIMER");
-            getContext().stopService(serviceIntent);
+            if (id != null) {
+                // Parar solo ese timer; el servicio sigue vivo si quedan otros
+                serviceIntent.putExtra("timerId", id);
+                getContext().startService(serviceIntent);
+            } else {
+                getContext().stopService(serviceIntent);
+            }
+            
+            JSObject result = new JSObject();
+            result.put("success", true);
+            call.resolve(result);
+        } catch (Exception e) {
+            TimerLog.e(TAG, "Error stopping timer service", e);
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            call.resolve(result);
+        }
+    }
+
+    @PluginMethod
+    public void pauseTimer(PluginCall call) {
+        TimerLog.d(TAG, "pauseTimer called");
+        
+        String id = call.getString("id");
+        
+        try {
+            NativeTimerService service = getBoundService();
+            if (service != null) {
+                service.pauseTimer(id);
+                
+                JSObject result = new JSObject();
+                result.put("success", true);
+                call.resolve(result);
+                return;
+            }
+            
+            Intent serviceIntent = new Intent(getContext(), NativeTimerService.class);
+            serviceIntent.putExtra("action", "PAUSE_TIMER");
+            if (id != null) {
+                serviceIntent.putExtra("timerId", id);
+            }
+            getContext().startService(serviceIntent);
             
             JSObject result = new JSObject();
             result.put("success", true);
             call.resolve(result);
         } catch (Exception e) {
-            Log.e(TAG, "Error stopping timer service", e);
+            TimerLog.e(TAG, "Error pausing timer", e);
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            call.resolve(result);
+        }
+    }
+
+    @PluginMethod
+    public void resumeTimer(PluginCall call) {
+        TimerLog.d(TAG, "resumeTimer called");
+        
+        String id = call.getString("id");
+        
+        try {
+            NativeTimerService service = getBoundService();
+            if (service != null) {
+                service.resumeTimer(id);
+                
+                JSObject result = new JSObject();
+                result.put("success", true);
+                call.resolve(result);
+                return;
+            }
+            
+            Intent serviceIntent = new Intent(getContext(), NativeTimerService.class);
+            serviceIntent.putExtra("action", "RESUME_TIMER");
+            if (id != null) {
+                serviceIntent.putExtra("timerId", id);
+            }
+            getContext().startService(serviceIntent);
+            
+            JSObject result = new JSObject();
+            result.put("success", true);
+            call.resolve(result);
+        } catch (Exception e) {
+            TimerLog.e(TAG, "Error resuming timer", e);
             JSObject result = new JSObject();
             result.put("success", false);
             result.put("error", e.getMessage());
@@ -89,15 +237,29 @@ public class NativeTimerPlugin extends Plugin {
 
     @PluginMethod
     public void updateNotification(PluginCall call) {
-        Log.d(TAG, "updateNotification called");
+        TimerLog.d(TAG, "updateNotification called");
         
+        String id = call.getString("id");
         String title = call.getString("title", "Timer activo");
         // Ya no necesitamos el body desde TypeScript, el servicio lo calculará
         
         try {
+            NativeTimerService service = getBoundService();
+            if (service != null) {
+                service.updateTitle(id != null ? id : NativeTimerService.DEFAULT_TIMER_ID, title);
+                
+                JSObject result = new JSObject();
+                result.put("success", true);
+                call.resolve(result);
+                return;
+            }
+            
             Intent serviceIntent = new Intent(getContext(), NativeTimerService.class);
             serviceIntent.putExtra("action", "UPDATE_NOTIFICATION");
             serviceIntent.putExtra("title", title);
+            if (id != null) {
+                serviceIntent.putExtra("timerId", id);
+            }
             // No pasamos body, el servicio calculará el tiempo internamente
             getContext().startService(serviceIntent);
             
@@ -105,7 +267,7 @@ public class NativeTimerPlugin extends Plugin {
             result.put("success", true);
             call.resolve(result);
         } catch (Exception e) {
-            Log.e(TAG, "Error updating notification", e);
+            TimerLog.e(TAG, "Error updating notification", e);
             JSObject result = new JSObject();
             result.put("success", false);
             result.put("error", e.getMessage());
@@ -113,34 +275,347 @@ public class NativeTimerPlugin extends Plugin {
         }
     }
 
+    /**
+     * Parámetros de arranque desde las opciones de startTimer o de un comando "start"
+     */
+    private static TimerStartRequest buildStartRequest(JSONObject options) {
+        TimerStartRequest request = new TimerStartRequest();
+        String id = optString(options, "id", null);
+        if (id != null) {
+            request.timerId = id;
+        }
+        Object startTime = options.opt("startTime");
+        request.title = optString(options, "title", "Timer activo");
+        request.body = optString(options, "body", "00:00:00");
+        request.primaryColor = optString(options, "primaryColor", "#0045a5"); // Color por defecto
+        request.localeTag = optString(options, "locale", null);
+        request.startTimePattern = optString(options, "startTimePattern", null);
+        request.startTime = startTime instanceof Number ? ((Number) startTime).longValue() : NativeTimerService.getClock().wallTime();
+        JSONObject rules = options.optJSONObject("rules");
+        if (rules != null) {
+            request.rules = TimerRules.of(
+                rules.optLong("target", 0),
+                rules.optLong("breakRequiredAfter", 0),
+                rules.optLong("overtimeWarning", 0),
+                rules.optLong("hardCap", 0));
+        }
+        return request;
+    }
+
+    /**
+     * Como PluginCall.getString: null o un valor que no sea texto cuentan como ausentes
+     * (JSONObject.optString convertiría JSONObject.NULL en "null")
+     */
+    private static String optString(JSONObject json, String key, String defaultValue) {
+        Object value = json.opt(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
     @PluginMethod
     public void isTimerRunning(PluginCall call) {
-        Log.d(TAG, "isTimerRunning called");
+        TimerLog.d(TAG, "isTimerRunning called");
         
-        // Esta información se puede obtener desde SharedPreferences
-        // que el servicio puede actualizar
+        NativeTimerService service = getBoundService();
         JSObject result = new JSObject();
-        result.put("isRunning", NativeTimerService.isRunning());
+        result.put("isRunning", service != null ? service.isTimerRunning() : NativeTimerService.isRunning());
         call.resolve(result);
     }
 
     @PluginMethod
     public void getElapsedTime(PluginCall call) {
-        Log.d(TAG, "getElapsedTime called");
+        TimerLog.d(TAG, "getElapsedTime called");
         
-        long elapsedTime = NativeTimerService.getElapsedTime();
+        NativeTimerService service = getBoundService();
+        long elapsedTime = service != null ? service.getElapsedTime(call.getString("id")) : 0;
         
         JSObject result = new JSObject();
         result.put("elapsedTime", elapsedTime);
         call.resolve(result);
     }
+
+    @PluginMethod
+    public void listTimers(PluginCall call) {
+        TimerLog.d(TAG, "listTimers called");
+        
+        TimerClock clock = NativeTimerService.getClock();
+        long wallNow = clock.wallTime();
+        long now = clock.elapsedRealtime();
+        JSArray timers = new JSArray();
+        for (TimerEntry entry : getActiveTimers()) {
+            timers.put(timerToJS(entry, wallNow, now));
+        }
+        
+        JSObject result = new JSObject();
+        result.put("timers", timers);
+        call.resolve(result);
+    }
+
+    /**
+     * 📸 Todo lo que JS necesita al volver a primer plano en un solo viaje por el bridge
+     */
+    @PluginMethod
+    public void getTimerSnapshot(PluginCall call) {
+        call.resolve(buildSnapshot(getBoundService()));
+    }
+
+    /**
+     * 📦 Ejecuta varios cambios de estado en un único viaje por el bridge y una sola pasada
+     * del hilo del servicio. El lote se valida entero antes de aplicar nada; con
+     * snapshot: true la respuesta incluye el estado resultante.
+     */
+    @PluginMethod
+    public void applyCommands(PluginCall call) {
+        JSArray array = call.getArray("commands");
+        if (array == null) {
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", "commands_required");
+            call.resolve(result);
+            return;
+        }
+        
+        List<TimerCommand> commands = new ArrayList<>(array.length());
+        boolean needsService = false;
+        boolean startsTimer = false;
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject json = array.optJSONObject(i);
+            int type = json != null ? TimerCommand.parseType(optString(json, "type", null)) : 0;
+            if (type == 0) {
+                JSObject result = new JSObject();
+                result.put("success", false);
+                result.put("error", "invalid_command");
+                result.put("index", i);
+                call.resolve(result);
+                return;
+            }
+            TimerCommand command = new TimerCommand(type);
+            command.timerId = optString(json, "id", null);
+            if (type == TimerCommand.START) {
+                command.startRequest = buildStartRequest(json);
+                startsTimer = true;
+            } else if (type == TimerCommand.UPDATE_TITLE) {
+                command.title = optString(json, "title", "Timer activo");
+            } else if (type == TimerCommand.SET_FOREGROUND) {
+                command.inForeground = json.optBoolean("inForeground", true);
+            }
+            if (type != TimerCommand.SET_FOREGROUND && type != TimerCommand.RESET_NOTIFICATION_STATE) {
+                needsService = true;
+            }
+            commands.add(command);
+        }
+        TimerLog.d(TAG, "applyCommands called", "commands", commands.size());
+        
+        if (startsTimer && !hasNotificationPermission()) {
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", "notification_permission_required");
+            call.resolve(result);
+            return;
+        }
+        
+        boolean includeSnapshot = call.getBoolean("snapshot", false);
+        NativeTimerService service = getBoundService();
+        if (service == null && needsService) {
+            // El arranque en frío sigue yendo por startTimer
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", "service_not_running");
+            call.resolve(result);
+            return;
+        }
+        
+        for (TimerCommand command : commands) {
+            if (command.type == TimerCommand.SET_FOREGROUND) {
+                appInForeground = command.inForeground;
+            }
+        }
+        if (service == null) {
+            // Sin servicio los comandos de estado de la app no tienen nada más que aplicar
+            JSObject result = includeSnapshot ? buildSnapshot(null) : new JSObject();
+            result.put("success", true);
+            call.resolve(result);
+            return;
+        }
+        
+        // Se resuelve desde el hilo del servicio cuando el lote ya está aplicado
+        service.applyCommands(commands, () -> {
+            JSObject result = includeSnapshot ? buildSnapshot(service) : new JSObject();
+            result.put("success", true);
+            call.resolve(result);
+        });
+    }
+
+    private JSObject buildSnapshot(NativeTimerService service) {
+        TimerClock clock = NativeTimerService.getClock();
+        long wallNow = clock.wallTime();
+        long now = clock.elapsedRealtime();
+        JSArray timers = new JSArray();
+        if (service != null) {
+            for (TimerEntry entry : service.getTimers()) {
+                JSObject timer = timerToJS(entry, wallNow, now);
+                timer.put("notificationDismissed", entry.notificationDismissed);
+                timer.put("segments", segmentsToJS(entry.copySegments(), wallNow, now));
+                timers.put(timer);
+            }
+        }
+        
+        JSObject metrics = new JSObject();
+        metrics.put("ticks", TimerMetrics.ticks.get());
+        metrics.put("posted", TimerMetrics.postedNotifications.get());
+        metrics.put("skipped", TimerMetrics.skippedNotifications.get());
+        metrics.put("tick", histogramToJS(TimerMetrics.TICK));
+        
+        JSObject result = new JSObject();
+        result.put("isRunning", service != null ? service.isTimerRunning() : NativeTimerService.isRunning());
+        result.put("appInForeground", appInForeground);
+        result.put("timers", timers);
+        result.put("metrics", metrics);
+        return result;
+    }
+
+    private static JSObject timerToJS(TimerEntry entry, long wallNow, long now) {
+        JSObject timer = new JSObject();
+        timer.put("id", entry.id);
+        timer.put("title", entry.title);
+        timer.put("startTime", entry.startTime);
+        timer.put("elapsedTime", entry.getElapsed(now));
+        timer.put("paused", entry.isPaused());
+        timer.put("primaryColor", entry.primaryColor);
+        timer.put("wallClockSkew", entry.getWallClockSkew(wallNow, now));
+        return timer;
+    }
+
+    /**
+     * Segmentos de actividad en reloj de pared; el segmento abierto no lleva end
+     */
+    private static JSArray segmentsToJS(long[] bounds, long wallNow, long now) {
+        JSArray segments = new JSArray();
+        for (int i = 0; i < bounds.length; i += 2) {
+            JSObject segment = new JSObject();
+            segment.put("start", wallNow - (now - bounds[i]));
+            if (i + 1 < bounds.length) {
+                segment.put("end", wallNow - (now - bounds[i + 1]));
+            }
+            segments.put(segment);
+        }
+        return segments;
+    }
+    
+    /**
+     * 🗂️ Resumen del histórico local de sesiones terminadas, sin ir al backend.
+     * from/to son instantes de reloj de pared; se cuentan los días locales completos que tocan.
+     */
+    @PluginMethod
+    public void getSessionSummary(PluginCall call) {
+        long now = NativeTimerService.getClock().wallTime();
+        int today = SessionStore.localDay(now);
+        Long from = call.getLong("from");
+        Long to = call.getLong("to");
+        int fromDay = from != null ? SessionStore.localDay(from) : today;
+        int toDay = to != null ? SessionStore.localDay(to) : today;
+        // Semanas de lunes a domingo (el día 0 de epoch fue jueves)
+        int weekStart = today - Math.floorMod(today + 3, 7);
+        
+        SessionStore store = SessionStore.getInstance(getContext());
+        JSObject result = new JSObject();
+        result.put("activeTime", store.getActiveTime(fromDay, toDay));
+        result.put("sessionCount", store.getSessionCount(fromDay, toDay));
+        result.put("today", store.getActiveTime(today, today));
+        result.put("thisWeek", store.getActiveTime(weekStart, weekStart + 6));
+        call.resolve(result);
+    }
+    
+    /**
+     * 📤 Exporta el histórico a un fichero (CSV o NDJSON) sin pasar los registros por el bridge.
+     * Devuelve solo la ruta y el nº de filas; el fichero se sobrescribe en cada exportación.
+     */
+    @PluginMethod
+    public void exportSessions(PluginCall call) {
+        String format = call.getString("format", "csv");
+        boolean ndjson = "ndjson".equals(format);
+        if (!ndjson && !"csv".equals(format)) {
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", "unsupported_format");
+            call.resolve(result);
+            return;
+        }
+        Long from = call.getLong("from");
+        Long to = call.getLong("to");
+        int fromDay = from != null ? SessionStore.localDay(from) : Integer.MIN_VALUE;
+        int toDay = to != null ? SessionStore.localDay(to) : Integer.MAX_VALUE - 1;
+        
+        try {
+            File exportDir = new File(getContext().getFilesDir(), "exports");
+            if (!exportDir.isDirectory() && !exportDir.mkdirs()) {
+                throw new IOException("Cannot create " + exportDir);
+            }
+            File target = new File(exportDir, "sessions." + (ndjson ? "ndjson" : "csv"));
+            int rows = SessionStore.getInstance(getContext()).export(target, ndjson, fromDay, toDay);
+            
+            JSObject result = new JSObject();
+            result.put("success", true);
+            result.put("path", target.getAbsolutePath());
+            result.put("rows", rows);
+            call.resolve(result);
+        } catch (IOException e) {
+            TimerLog.e(TAG, "Error exporting sessions", e);
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            call.resolve(result);
+        }
+    }
+    
+    /**
+     * 📮 Endpoint al que el outbox nativo envía los fichajes (null lo desactiva; se sigue encolando)
+     */
+    @PluginMethod
+    public void configureSync(PluginCall call) {
+        String endpoint = call.getString("endpoint");
+        Integer batchSize = call.getInt("batchSize", 50);
+        Map<String, String> headers = new HashMap<>();
+        JSObject headersObject = call.getObject("headers");
+        if (headersObject != null) {
+            Iterator<String> keys = headersObject.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                headers.put(key, headersObject.getString(key));
+            }
+        }
+        TimerLog.d(TAG, "configureSync", "endpoint", endpoint, "batchSize", batchSize);
+        
+        ClockOutbox.getInstance(getContext()).configure(endpoint, headers, batchSize);
+        
+        JSObject result = new JSObject();
+        result.put("success", true);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void getSyncStatus(PluginCall call) {
+        ClockOutbox outbox = ClockOutbox.getInstance(getContext());
+        JSObject result = new JSObject();
+        result.put("queueDepth", outbox.getQueueDepth());
+        result.put("lastFlushLatencyMs", outbox.getLastFlushLatencyMs());
+        result.put("lastSuccessAt", outbox.getLastSuccessAt());
+        result.put("consecutiveFailures", outbox.getConsecutiveFailures());
+        result.put("lastError", outbox.getLastError());
+        result.put("droppedEvents", outbox.getDroppedEvents());
+        result.put("awaitingCredentials", outbox.isAwaitingCredentials());
+        call.resolve(result);
+    }
     
     @PluginMethod
     public void setAppForegroundState(PluginCall call) {
         Boolean inForeground = call.getBoolean("inForeground", true);
-        Log.d(TAG, "Setting app foreground state: " + inForeground);
+        TimerLog.d(TAG, "Setting app foreground state", "inForeground", inForeground);
         
-        NativeTimerService.setAppForegroundState(inForeground);
+        appInForeground = inForeground;
+        NativeTimerService service = getBoundService();
+        if (service != null) {
+            service.setAppForegroundState(inForeground);
+        }
         
         JSObject result = new JSObject();
         result.put("success", true);
@@ -149,9 +624,105 @@ public class NativeTimerPlugin extends Plugin {
     
     @PluginMethod
     public void resetNotificationState(PluginCall call) {
-        Log.d(TAG, "Resetting notification dismissed state");
+        TimerLog.d(TAG, "Resetting notification dismissed state");
+        
+        NativeTimerService service = getBoundService();
+        if (service != null) {
+            service.resetNotificationDismissedState();
+        }
+        
+        JSObject result = new JSObject();
+        result.put("success", true);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void getNotificationStats(PluginCall call) {
+        JSObject result = new JSObject();
+        result.put("posted", NativeTimerService.getPostedNotificationCount());
+        result.put("skipped", NativeTimerService.getSkippedNotificationCount());
+        call.resolve(result);
+    }
+
+    /**
+     * 📈 Contadores y percentiles (µs) del tick, el render y el IPC de notify.
+     * Con reset: true se ponen a cero después de leerlos.
+     */
+    @PluginMethod
+    public void getMetrics(PluginCall call) {
+        JSObject result = new JSObject();
+        result.put("ticks", TimerMetrics.ticks.get());
+        result.put("posted", TimerMetrics.postedNotifications.get());
+        result.put("skipped", TimerMetrics.skippedNotifications.get());
+        result.put("dismissals", TimerMetrics.dismissals.get());
+        result.put("restarts", TimerMetrics.restarts.get());
+        result.put("coalesced", TimerMetrics.coalescedCommands.get());
+        result.put("rateLimited", TimerMetrics.rateLimitedNotifications.get());
+        result.put("tick", histogramToJS(TimerMetrics.TICK));
+        result.put("render", histogramToJS(TimerMetrics.RENDER));
+        result.put("notify", histogramToJS(TimerMetrics.NOTIFY));
+        result.put("startup", histogramToJS(TimerMetrics.STARTUP));
+        result.put("startupRich", histogramToJS(TimerMetrics.STARTUP_RICH));
+        if (call.getBoolean("reset", false)) {
+            TimerMetrics.reset();
+        }
+        call.resolve(result);
+    }
+
+    private static JSObject histogramToJS(LatencyHistogram histogram) {
+        JSObject json = new JSObject();
+        json.put("count", histogram.getCount());
+        json.put("p50", histogram.percentileMicros(0.50));
+        json.put("p90", histogram.percentileMicros(0.90));
+        json.put("p99", histogram.percentileMicros(0.99));
+        json.put("max", histogram.getMaxMicros());
+        return json;
+    }
+
+    /**
+     * 🪵 Nivel de log del plugin y tamaño del buffer circular en memoria (0 lo desactiva)
+     */
+    @PluginMethod
+    public void setLogLevel(PluginCall call) {
+        String level = call.getString("level", "warn");
+        int ringBufferSize = call.getInt("ringBufferSize", 0);
+        int parsed;
+        switch (level) {
+            case "debug": parsed = TimerLog.DEBUG; break;
+            case "info": parsed = TimerLog.INFO; break;
+            case "warn": parsed = TimerLog.WARN; break;
+            case "error": parsed = TimerLog.ERROR; break;
+            case "none": parsed = TimerLog.NONE; break;
+            default:
+                JSObject result = new JSObject();
+                result.put("success", false);
+                result.put("error", "unsupported_level");
+                call.resolve(result);
+                return;
+        }
+        TimerLog.configure(parsed, ringBufferSize);
         
-        NativeTimerService.resetNotificationDismissedState();
+        JSObject result = new JSObject();
+        result.put("success", true);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void getRecentLogs(PluginCall call) {
+        JSArray lines = new JSArray();
+        for (String line : TimerLog.getRecent()) {
+            lines.put(line);
+        }
+        JSObject result = new JSObject();
+        result.put("logs", lines);
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void setTimerUpdateRate(PluginCall call) {
+        Long minIntervalMs = call.getLong("minIntervalMs", 0L);
+        minEventIntervalMs = Math.max(0, minIntervalMs);
+        TimerLog.d(TAG, "timerUpdate min interval", "ms", minEventIntervalMs);
         
         JSObject result = new JSObject();
         result.put("success", true);
@@ -159,12 +730,169 @@ public class NativeTimerPlugin extends Plugin {
     }
 
     /**
-     * Método llamado desde el servicio para notificar actualizaciones
+     * Método llamado desde el servicio para notificar actualizaciones.
+     * Se emite como máximo un evento por cambio visible y por timer, respetando el intervalo
+     * mínimo configurado; sin listeners o con la WebView en segundo plano no se emite nada.
+     */
+    public static void notifyTimerUpdate(String timerId, long elapsedTime, String formattedTime) {
+        NativeTimerPlugin plugin = liveInstance;
+        if (plugin != null) {
+            plugin.emitTimerUpdate(timerId, elapsedTime, formattedTime);
+        }
+    }
+
+    /**
+     * 🚦 Umbral de jornada superado. A diferencia de timerUpdate se retiene si aún no hay
+     * listener: es un evento puntual que JS no debe perderse.
+     */
+    public static void notifyThreshold(String timerId, String rule, long thresholdMs, long elapsedTime) {
+        NativeTimerPlugin plugin = liveInstance;
+        if (plugin != null) {
+            JSObject data = new JSObject();
+            data.put("id", timerId);
+            data.put("rule", rule);
+            data.put("threshold", thresholdMs);
+            data.put("elapsedTime", elapsedTime);
+            plugin.notifyListeners(TIMER_THRESHOLD_EVENT, data, true);
+        }
+    }
+
+    /**
+     * Envía los eventos del servicio a plugin sin pasar por load, que necesita el Bridge. Solo para tests
      */
-    public static void notifyTimerUpdate(long elapsedTime, String formattedTime) {
-        // Implementar notificación a los listeners si es necesario
-        // Por ahora el servicio maneja todo de forma independiente
-        Log.d("NativeTimerPlugin", "Timer update: " + formattedTime + " (" + elapsedTime + "ms)");
+    static void setLiveInstance(NativeTimerPlugin plugin) {
+        liveInstance = plugin;
+    }
+
+    private void emitTimerUpdate(String timerId, long elapsedTime, String formattedTime) {
+        if (webViewPaused || !hasListeners(TIMER_UPDATE_EVENT)) {
+            return;
+        }
+        
+        long now = NativeTimerService.getClock().elapsedRealtime();
+        synchronized (lastEvents) {
+            EmittedEvent last = lastEvents.get(timerId);
+            if (last == null) {
+                last = new EmittedEvent(timerId);
+                lastEvents.put(timerId, last);
+            } else if (formattedTime.equals(last.formattedTime)) {
+                last.pendingFormattedTime = null;
+                return;
+            } else if (now - last.emittedAt < minEventIntervalMs) {
+                // Retener el último cambio y emitirlo al vencer el intervalo: si es el último
+                // (p.ej. una pausa) JS no debe quedarse con un estado viejo
+                last.pendingFormattedTime = formattedTime;
+                last.pendingElapsed = elapsedTime;
+                if (!last.trailingScheduled) {
+                    last.trailingScheduled = true;
+                    trailingHandler.postDelayed(last.trailing, last.emittedAt + minEventIntervalMs - now);
+                }
+                return;
+            }
+            last.formattedTime = formattedTime;
+            last.emittedAt = now;
+            last.pendingFormattedTime = null;
+        }
+        
+        sendTimerUpdate(timerId, elapsedTime, formattedTime);
+    }
+
+    private void emitTrailingUpdate(EmittedEvent event) {
+        String formattedTime;
+        long elapsedTime;
+        synchronized (lastEvents) {
+            event.trailingScheduled = false;
+            formattedTime = event.pendingFormattedTime;
+            elapsedTime = event.pendingElapsed;
+            event.pendingFormattedTime = null;
+            if (formattedTime == null || lastEvents.get(event.timerId) != event) {
+                return;
+            }
+            event.formattedTime = formattedTime;
+            event.emittedAt = NativeTimerService.getClock().elapsedRealtime();
+        }
+        if (webViewPaused || !hasListeners(TIMER_UPDATE_EVENT)) {
+            return;
+        }
+        sendTimerUpdate(event.timerId, elapsedTime, formattedTime);
+    }
+
+    private void sendTimerUpdate(String timerId, long elapsedTime, String formattedTime) {
+        JSObject data = new JSObject();
+        data.put("id", timerId);
+        data.put("elapsedTime", elapsedTime);
+        data.put("formattedTime", formattedTime);
+        notifyListeners(TIMER_UPDATE_EVENT, data);
+    }
+
+    @Override
+    public void load() {
+        liveInstance = this;
+        
+        // Sin BIND_AUTO_CREATE: el enlace se completa cuando el servicio se arranque
+        Intent bindIntent = new Intent(getContext(), NativeTimerService.class);
+        getContext().bindService(bindIntent, serviceConnection, 0);
+    }
+
+    @Override
+    protected void handleOnPause() {
+        super.handleOnPause();
+        webViewPaused = true;
+    }
+
+    @Override
+    protected void handleOnResume() {
+        super.handleOnResume();
+        webViewPaused = false;
+        
+        // Poner al día a la WebView con el estado actual de cada timer
+        synchronized (lastEvents) {
+            lastEvents.clear();
+        }
+        trailingHandler.removeCallbacksAndMessages(null);
+        long now = NativeTimerService.getClock().elapsedRealtime();
+        for (TimerEntry entry : getActiveTimers()) {
+            long elapsed = entry.getElapsed(now);
+            emitTimerUpdate(entry.id, elapsed, resumeFormatter.formatElapsed(elapsed));
+        }
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (liveInstance == this) {
+            liveInstance = null;
+        }
+        try {
+            getContext().unbindService(serviceConnection);
+        } catch (IllegalArgumentException e) {
+            TimerLog.w(TAG, "Service was not bound", e);
+        }
+        boundService = null;
+        trailingHandler.removeCallbacksAndMessages(null);
+        super.handleOnDestroy();
+    }
+
+    private List<TimerEntry> getActiveTimers() {
+        NativeTimerService service = getBoundService();
+        return service != null ? service.getTimers() : new ArrayList<>();
+    }
+
+    /**
+     * Último evento timerUpdate emitido por timer (para coalescer)
+     */
+    private final class EmittedEvent {
+        final String timerId;
+        final Runnable trailing = () -> emitTrailingUpdate(this);
+        String formattedTime;
+        long emittedAt;
+        // Cambio retenido por el intervalo mínimo (null = nada pendiente)
+        String pendingFormattedTime;
+        long pendingElapsed;
+        boolean trailingScheduled;
+
+        EmittedEvent(String timerId) {
+            this.timerId = timerId;
+        }
     }
 
     /**
@@ -178,8 +906,7 @@ public class NativeTimerPlugin extends Plugin {
                     getContext(), Manifest.permission.POST_NOTIFICATIONS)
                     == PackageManager.PERMISSION_GRANTED;
             boolean notificationsEnabled = NotificationManagerCompat.from(getContext()).areNotificationsEnabled();
-            Log.d(TAG, "hasNotificationPermission: permissionGranted=" + permissionGranted
-                    + ", notificationsEnabled=" + notificationsEnabled);
+            TimerLog.d(TAG, "hasNotificationPermission", "permissionGranted", permissionGranted, "notificationsEnabled", notificationsEnabled);
             return permissionGranted && notificationsEnabled;
         }
         // API < 33: POST_NOTIFICATIONS no existe, siempre permitido
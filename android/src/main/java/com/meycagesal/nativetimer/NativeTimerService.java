@@ -4,17 +4,27 @@ import android.app.Notification;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.graphics.drawable.GradientDrawable;
+import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
-import android.util.Log;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.Trace;
+import android.provider.Settings;
 import android.widget.RemoteViews;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
@@ -22,40 +32,267 @@ import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 import androidx.core.content.ContextCompat;
 
-// Para formatear fechas
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-
 public class NativeTimerService extends Service {
     
     private static final String TAG = "NativeTimerService";
     private static final String CHANNEL_ID = "work_session_channel"; // ✅ Usar el mismo canal que Capacitor
     private static final int NOTIFICATION_ID = 1001;
+    private static final int SUMMARY_NOTIFICATION_ID = 1000;
+    private static final String GROUP_KEY = "native_timer_group";
+    static final String DEFAULT_TIMER_ID = "default";
+    private static final String JOURNAL_FILE = "native_timer.journal";
+    
+    private static final long MINUTE_MS = 60 * 1000;
+    private static final long SCREEN_OFF_ALIGNMENT_MS = 15 * MINUTE_MS; // Con pantalla apagada nadie ve el texto
+    private static final long BOUNDARY_SLACK_MS = 20; // Caer justo después del cambio de minuto, nunca antes
+    private static final long REBOOT_DETECTION_TOLERANCE_MS = 60 * 1000; // Sin BOOT_COUNT: margen para ajustes NTP
+    
+    private static volatile boolean serviceRunning = false;
+    
+    // 🕰️ Inyectables para simular una jornada en tests; se leen en onCreate
+    private static volatile TimerClock clock = TimerClock.SYSTEM;
+    private static volatile TickScheduler tickSchedulerOverride;
+    private static volatile Looper workerLooperOverride;
     
-    private static boolean serviceRunning = false;
-    private static boolean notificationDismissed = false; // Track si usuario descartó notificación
-    private static boolean appInForeground = true; // Track si app está en primer plano
-    private static NativeTimerService instance;
+    private final IBinder binder = new LocalBinder();
+    private volatile boolean alive = false;
+    private volatile boolean appInForeground = true; // Track si app está en primer plano
     
+    // 🧵 Hilo propio que posee el estado de los timers y todo el render: el main Looper queda para la WebView
+    private HandlerThread workerThread;
     private Handler handler;
-    private Runnable updateRunnable;
-    private long startTime;
-    private String startTimeFormatted;
-    private String currentTitle = "Timer activo";
-    private String currentBody = "00:00:00";
-    private String currentPrimaryColor = "#0045a5"; // Color por defecto
+    private TimerScheduler scheduler;
+    private TimerBackstop backstop;
+    private NotifyRateLimiter notifyLimiter;
+    // 📚 Resumen del grupo publicado (solo hilo del servicio); puede quedar uno de un proceso anterior
+    private boolean summaryShown = true;
+    private long summaryFingerprint = TimerEntry.NO_FINGERPRINT;
+    // 🔀 Último updateTitle encolado y aún sin aplicar: otro para el mismo timer lo sobrescribe
+    private final Object dispatchLock = new Object();
+    private PendingTitle lastDispatchedTitle; // Guardado por dispatchLock
+    // Timers activos por id, en orden de inicio (el primero es el del foreground service)
+    private final Map<String, TimerEntry> timers = new LinkedHashMap<>();
+    private int nextNotificationId = NOTIFICATION_ID + 1;
+    private volatile TimerEntry foregroundTimer; // Escrito en el hilo del servicio, leído desde el binder
+    private TimerJournal journal;
+    private SessionStore sessionStore;
+    private ClockOutbox outbox;
+    private boolean restorePending = false; // Timers recuperados del journal sin notificación aún
+    private volatile boolean screenInteractive = true;
+    // ⚡ Arranque en frío: notificación mínima publicada en onStartCommand, sustituida por la completa
+    private volatile boolean foregroundStarted = false;
+    private volatile boolean placeholderShown = false;
+    // Por proceso: sobreviven a las instancias del servicio
+    private static PendingIntent customContentIntent;
+    private static PendingIntent simpleContentIntent;
+
+    /**
+     * 🔌 Acceso en proceso para el plugin: llamadas tipadas sin Intents ni ActivityManager
+     */
+    final class LocalBinder extends Binder {
+        NativeTimerService getService() {
+            return NativeTimerService.this;
+        }
+    }
 
     // Static methods para el plugin
     public static boolean isRunning() {
         return serviceRunning;
     }
-    
-    public static long getElapsedTime() {
-        if (!serviceRunning || instance == null) {
+
+    static TimerClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Sustituye los relojes y, opcionalmente, el Handler de los ticks y el Looper de los
+     * comandos (null = los del hilo del servicio). Con el main Looper de Robolectric un test
+     * decide cuándo se aplica cada comando. Debe llamarse antes de crear el servicio; solo para tests.
+     */
+    static void setClock(TimerClock testClock, TickScheduler testTicks, Looper testLooper) {
+        clock = testClock != null ? testClock : TimerClock.SYSTEM;
+        tickSchedulerOverride = testTicks;
+        workerLooperOverride = testLooper;
+    }
+
+    public static long getPostedNotificationCount() {
+        return TimerMetrics.postedNotifications.get();
+    }
+
+    public static long getSkippedNotificationCount() {
+        return TimerMetrics.skippedNotifications.get();
+    }
+
+    // --- API en proceso (vía LocalBinder). Las mutaciones se encolan en el Handler del servicio ---
+
+    boolean isAlive() {
+        return alive;
+    }
+
+    boolean isTimerRunning() {
+        return alive && serviceRunning;
+    }
+
+    /**
+     * Tiempo transcurrido de un timer concreto. Con id null devuelve el timer por defecto
+     * o, si no existe, el que mantiene el foreground service.
+     */
+    long getElapsedTime(String timerId) {
+        if (!serviceRunning) {
             return 0;
         }
-        return System.currentTimeMillis() - instance.startTime;
+        TimerEntry entry;
+        synchronized (timers) {
+            entry = timerId != null ? timers.get(timerId) : timers.get(DEFAULT_TIMER_ID);
+            if (entry == null && timerId == null) {
+                entry = foregroundTimer;
+            }
+        }
+        return entry != null ? entry.getElapsed(clock.elapsedRealtime()) : 0;
+    }
+
+    /**
+     * Copia de los timers activos (para listTimers del plugin)
+     */
+    List<TimerEntry> getTimers() {
+        synchronized (timers) {
+            return new ArrayList<>(timers.values());
+        }
+    }
+
+    void startTimer(TimerStartRequest request) {
+        dispatch(() -> {
+            if (restorePending) {
+                resumeRestoredTimers();
+            }
+            if (!handleStartTimer(request) && timers.isEmpty()) {
+                stopSelf();
+            }
+        });
+    }
+
+    /**
+     * 🔀 Los cambios de título se fusionan: si el último comando encolado es otro título
+     * para el mismo timer y aún no se ha aplicado, se sobrescribe en vez de encolar otro.
+     * Solo se fusiona con el último, así que el orden respecto a los demás comandos se conserva.
+     */
+    void updateTitle(String timerId, String title) {
+        if (title == null) title = "Timer activo";
+        synchronized (dispatchLock) {
+            PendingTitle pending = lastDispatchedTitle;
+            if (pending != null && pending.timerId.equals(timerId)) {
+                pending.title = title;
+                TimerMetrics.coalescedCommands.incrementAndGet();
+                return;
+            }
+            PendingTitle next = new PendingTitle(timerId, title);
+            lastDispatchedTitle = next;
+            handler.post(() -> applyPendingTitle(next));
+        }
+    }
+
+    private void applyPendingTitle(PendingTitle pending) {
+        String title;
+        synchronized (dispatchLock) {
+            if (lastDispatchedTitle == pending) {
+                lastDispatchedTitle = null;
+            }
+            title = pending.title;
+        }
+        if (restorePending) {
+            resumeRestoredTimers();
+        }
+        handleUpdateTitle(pending.timerId, title);
+    }
+
+    /**
+     * Encola un comando en el hilo del servicio. Cierra la fusión de títulos pendiente:
+     * un título posterior no puede adelantarse a este comando.
+     */
+    private void dispatch(Runnable command) {
+        synchronized (dispatchLock) {
+            lastDispatchedTitle = null;
+            handler.post(command);
+        }
+    }
+
+    /**
+     * ⏸️ Congela un timer sin tocar el foreground service (timerId null = timer por defecto)
+     */
+    void pauseTimer(String timerId) {
+        dispatch(() -> handlePauseTimer(timerId != null ? timerId : DEFAULT_TIMER_ID));
+    }
+
+    void resumeTimer(String timerId) {
+        dispatch(() -> handleResumeTimer(timerId != null ? timerId : DEFAULT_TIMER_ID));
+    }
+
+    /**
+     * Para un timer concreto, o todos con timerId null (el servicio se detiene si no queda ninguno)
+     */
+    void stopTimer(String timerId) {
+        dispatch(() -> {
+            if (handleStopTimer(timerId)) {
+                stopSelf();
+            }
+        });
+    }
+
+    /**
+     * 📦 Aplica un lote de comandos en una sola pasada del hilo del servicio: ningún tick
+     * ni otra llamada se intercala entre ellos. onApplied (puede ser null) se ejecuta en
+     * ese mismo hilo al terminar, con el estado ya consistente.
+     */
+    void applyCommands(List<TimerCommand> commands, Runnable onApplied) {
+        for (TimerCommand command : commands) {
+            if (command.type == TimerCommand.SET_FOREGROUND) {
+                appInForeground = command.inForeground;
+            }
+        }
+        dispatch(() -> {
+            if (restorePending) {
+                resumeRestoredTimers();
+            }
+            boolean lifecycleChanged = false;
+            for (TimerCommand command : commands) {
+                String timerId = command.timerId != null ? command.timerId : DEFAULT_TIMER_ID;
+                switch (command.type) {
+                    case TimerCommand.START:
+                        handleStartTimer(command.startRequest);
+                        lifecycleChanged = true;
+                        break;
+                    case TimerCommand.STOP:
+                        // Un id desconocido no para nada; solo cuenta si el mapa queda vacío
+                        if (handleStopTimer(command.timerId)) {
+                            lifecycleChanged = true;
+                        }
+                        break;
+                    case TimerCommand.PAUSE:
+                        handlePauseTimer(timerId);
+                        break;
+                    case TimerCommand.RESUME:
+                        handleResumeTimer(timerId);
+                        break;
+                    case TimerCommand.UPDATE_TITLE:
+                        handleUpdateTitle(timerId, command.title);
+                        break;
+                    case TimerCommand.SET_FOREGROUND:
+                        handleAppForegroundState(command.inForeground);
+                        break;
+                    case TimerCommand.RESET_NOTIFICATION_STATE:
+                        handleResetNotificationState();
+                        break;
+                }
+            }
+            TimerLog.d(TAG, "Command batch applied", "commands", commands.size(), "timers", timers.size());
+            if (onApplied != null) {
+                onApplied.run();
+            }
+            // Un stop seguido de un start en el mismo lote deja el servicio vivo
+            if (lifecycleChanged && timers.isEmpty()) {
+                stopSelf();
+            }
+        });
     }
 
     /**
@@ -69,8 +306,7 @@ public class NativeTimerService extends Service {
                     this, Manifest.permission.POST_NOTIFICATIONS)
                     == PackageManager.PERMISSION_GRANTED;
             boolean notificationsEnabled = NotificationManagerCompat.from(this).areNotificationsEnabled();
-            Log.d(TAG, "hasNotificationPermission: permissionGranted=" + permissionGranted
-                    + ", notificationsEnabled=" + notificationsEnabled);
+            TimerLog.d(TAG, "hasNotificationPermission", "permissionGranted", permissionGranted, "notificationsEnabled", notificationsEnabled);
             return permissionGranted && notificationsEnabled;
         }
         return true;
@@ -79,302 +315,967 @@ public class NativeTimerService extends Service {
     @Override
     public void onCreate() {
         super.onCreate();
-        Log.d(TAG, "Service created");
-        instance = this;
-        handler = new Handler(Looper.getMainLooper());
+        TimerLog.d(TAG, "Service created");
+        alive = true;
+        if (workerLooperOverride != null) {
+            handler = new Handler(workerLooperOverride);
+        } else {
+            workerThread = new HandlerThread("NativeTimerWorker", Process.THREAD_PRIORITY_DISPLAY);
+            workerThread.start();
+            handler = new Handler(workerThread.getLooper());
+        }
+        TickScheduler ticks = tickSchedulerOverride != null ? tickSchedulerOverride : TickScheduler.forHandler(handler);
+        scheduler = new TimerScheduler(ticks, clock, this::onTimerDue);
+        backstop = new TimerBackstop(this);
+        notifyLimiter = new NotifyRateLimiter(clock);
+        registerScreenReceiver();
+        handler.post(() -> {
+            // El histórico de sesiones se carga al cerrar la primera sesión, no en el arranque
+            outbox = ClockOutbox.getInstance(this);
+            restoreFromJournal();
+        });
         // ✅ Canal ya creado por Capacitor, no necesitamos crearlo aquí
-        Log.d(TAG, "Using notification channel created by Capacitor: " + CHANNEL_ID);
+        TimerLog.d(TAG, "Using notification channel created by Capacitor", "channel", CHANNEL_ID);
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        Log.d(TAG, "Service onStartCommand");
+        TimerLog.d(TAG, "Service onStartCommand");
         
-        if (intent == null) {
-            return START_STICKY;
+        String startAction = intent != null ? intent.getStringExtra("action") : null;
+        if (!foregroundStarted && ("START_TIMER".equals(startAction) || TimerBackstop.ACTION.equals(startAction))) {
+            // Arrancado con startForegroundService (startTimer o la alarma de respaldo):
+            // cumplir ya el plazo, sin esperar al hilo del servicio
+            startForegroundFast(intent);
         }
         
-        String action = intent.getStringExtra("action");
+        // El main thread solo despacha; el trabajo real va al hilo del servicio
+        if (intent != null && "UPDATE_NOTIFICATION".equals(intent.getStringExtra("action"))) {
+            String timerId = intent.getStringExtra("timerId");
+            updateTitle(timerId != null ? timerId : DEFAULT_TIMER_ID, intent.getStringExtra("title"));
+        } else {
+            dispatch(() -> handleCommand(intent));
+        }
         
-        if ("START_TIMER".equals(action)) {
-            // Solo actualizar startTime si no está ya ejecutándose el servicio
-            if (!serviceRunning) {
-                startTime = intent.getLongExtra("startTime", System.currentTimeMillis());
-                // 🆕 Formatear la fecha de inicio
-                startTimeFormatted = formatStartTime(startTime);
-                Log.d(TAG, "Starting timer with new startTime: " + startTime + " (" + startTimeFormatted + ")");
+        if (intent != null && "STOP_TIMER".equals(intent.getStringExtra("action"))
+                && intent.getStringExtra("timerId") == null) {
+            return START_NOT_STICKY;
+        }
+        return START_STICKY;
+    }
+
+    /**
+     * ⚡ Publica una notificación mínima (sin RemoteViews ni versión pública, un solo build)
+     * con el cronómetro nativo. La completa la sustituye en cuanto el hilo del servicio
+     * procesa el START (ver startTimerUpdates).
+     */
+    private void startForegroundFast(Intent intent) {
+        long started = System.nanoTime();
+        Trace.beginSection(TimerMetrics.TRACE_STARTUP);
+        try {
+            String title = intent.getStringExtra("title");
+            long startTime = intent.getLongExtra("startTime", 0);
+            NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                    .setContentTitle("⏰ JORNADA ACTIVA")
+                    .setContentText(title != null ? title : "Timer activo")
+                    .setSmallIcon(android.R.drawable.ic_menu_agenda)
+                    .setContentIntent(getContentIntent(this, 1002))
+                    .setOngoing(true)
+                    .setSilent(true)
+                    .setOnlyAlertOnce(true)
+                    .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                    .setCategory(NotificationCompat.CATEGORY_SERVICE)
+                    .setForegroundServiceBehavior(NotificationCompat.FOREGROUND_SERVICE_IMMEDIATE)
+                    .setGroup(GROUP_KEY);
+            if (startTime > 0) {
+                builder.setShowWhen(true).setWhen(startTime).setUsesChronometer(true);
             } else {
-                Log.d(TAG, "Service already running, keeping existing startTime: " + startTime + " (" + startTimeFormatted + ")");
+                // Alarma de respaldo: el inicio llega con el journal, en el hilo del servicio
+                builder.setShowWhen(false);
             }
-            
-            currentTitle = intent.getStringExtra("title");
-            currentBody = intent.getStringExtra("body");
-            currentPrimaryColor = intent.getStringExtra("primaryColor");
-            
-            if (currentTitle == null) currentTitle = "Timer activo";
-            if (currentBody == null) currentBody = "00:00:00";
-            if (currentPrimaryColor == null) currentPrimaryColor = "#0045a5";
-            
-            Log.d(TAG, "Starting timer with primary color: " + currentPrimaryColor);
+            startForeground(NOTIFICATION_ID, builder.build());
+            foregroundStarted = true;
+            placeholderShown = true;
+        } catch (RuntimeException e) {
+            TimerLog.e(TAG, "Error posting startup notification", e);
+        } finally {
+            Trace.endSection();
+        }
+        if ("START_TIMER".equals(intent.getStringExtra("action"))) {
+            long requestedAt = intent.getLongExtra("requestedAtNanos", 0);
+            TimerMetrics.STARTUP.recordNanos(System.nanoTime() - (requestedAt > 0 ? requestedAt : started));
+        }
+    }
 
-            // Defensive guard: abort if notification permission is missing
-            if (!hasNotificationPermission()) {
-                Log.w(TAG, "onStartCommand: notification permission missing — aborting startForeground, stopping self");
+    private void handleCommand(Intent intent) {
+        if (intent == null) {
+            // Reinicio START_STICKY tras matar el proceso: reanudar lo recuperado del journal
+            if (restorePending) {
+                resumeRestoredTimers();
+            }
+            return;
+        }
+        
+        String action = intent.getStringExtra("action");
+        String timerId = intent.getStringExtra("timerId");
+        if (timerId == null) timerId = DEFAULT_TIMER_ID;
+        
+        if (restorePending && !"STOP_TIMER".equals(action) && !"NOTIFICATION_DISMISSED".equals(action)) {
+            resumeRestoredTimers();
+        }
+        
+        if ("START_TIMER".equals(action)) {
+            boolean started = handleStartTimer(TimerStartRequest.fromIntent(intent));
+            if (!started && timers.isEmpty()) {
                 stopSelf();
-                return START_NOT_STICKY;
             }
-
-            startTimerUpdates();
             
-        } else if ("UPDATE_NOTIFICATION".equals(action)) {
-            currentTitle = intent.getStringExtra("title");
+        } else if ("PAUSE_TIMER".equals(action)) {
+            handlePauseTimer(timerId);
             
-            if (currentTitle == null) currentTitle = "Timer activo";
+        } else if ("RESUME_TIMER".equals(action)) {
+            handleResumeTimer(timerId);
             
-            // Calcular el tiempo transcurrido basado en nuestro startTime interno
-            if (serviceRunning && startTime > 0) {
-                long elapsed = System.currentTimeMillis() - startTime;
-                currentBody = formatTime(elapsed);
-                Log.d(TAG, "UPDATE_NOTIFICATION: calculated time = " + currentBody + " (startTime=" + startTime + ", elapsed=" + elapsed + "ms)");
-            } else {
-                currentBody = "00:00:00";
-                Log.d(TAG, "UPDATE_NOTIFICATION: service not running or invalid startTime");
+        } else if ("NOTIFICATION_DISMISSED".equals(action)) {
+            TimerEntry entry = timers.get(timerId);
+            if (entry != null && !entry.notificationDismissed) {
+                onNotificationDismissed(entry);
             }
             
-            updateNotification(currentTitle, currentBody);
-            
         } else if ("STOP_TIMER".equals(action)) {
+            if (handleStopTimer(intent.getStringExtra("timerId"))) {
+                stopSelf();
+            }
+            
+        } else if (TimerBackstop.ACTION.equals(action)) {
+            // El Handler se quedó atrás (Doze) o el proceso murió y se acaba de restaurar
+            backstop.onFired();
+            TimerLog.i(TAG, "Backstop alarm fired", "timers", timers.size());
+            if (timers.isEmpty()) {
+                // Quita también la notificación mínima del arranque
+                stopTimerUpdates();
+                stopSelf();
+                return;
+            }
+            if (!foregroundStarted && foregroundTimer != null) {
+                // La alarma arranca con startForegroundService. Normalmente ya lo cumplieron el arranque
+                // rápido o la restauración; solo si ambos fallaron hay que publicarla aquí
+                startForeground(foregroundTimer.notificationId, createNotification(foregroundTimer));
+                foregroundTimer.renderedFingerprint = visibleFingerprint(foregroundTimer, foregroundTimer.getElapsed(clock.elapsedRealtime()));
+                foregroundStarted = true;
+            }
+            // El render lo decide el tick: si nada visible cambió desde la última notificación, no se publica
+            for (TimerEntry entry : timers.values()) {
+                scheduler.schedule(entry, 0);
+            }
+        }
+    }
+
+    /**
+     * Arranca (o actualiza si ya existe) un timer.
+     * @return false si falta el permiso de notificaciones y no se arrancó
+     */
+    private boolean handleStartTimer(TimerStartRequest request) {
+        String timerId = request.timerId;
+        String title = request.title;
+        String body = request.body;
+        String primaryColor = request.primaryColor;
+        TimerEntry entry = timers.get(timerId);
+        boolean isNew = entry == null;
+        
+        // Solo fijar startTime si el timer no está ya ejecutándose
+        if (isNew) {
+            entry = new TimerEntry(timerId, allocateNotificationId(timerId));
+            entry.startTime = request.startTime;
+            // ⏱️ Anclar una vez al reloj monótono; a partir de aquí el cálculo no depende del reloj de pared
+            entry.anchor(clock.wallTime(), clock.elapsedRealtime(), getBootCount());
+            if (request.localeTag != null) entry.localeTag = request.localeTag;
+            if (request.startTimePattern != null) entry.startTimePattern = request.startTimePattern;
+            entry.rules = request.rules;
+            if (entry.rules != null) {
+                entry.rules.compile(entry.getElapsed(clock.elapsedRealtime()), 0);
+            }
+            // 🆕 Formatear la fecha de inicio (una vez por sesión)
+            entry.startTimeFormatted = formatStartTime(entry);
+            TimerLog.d(TAG, "Starting timer with new startTime", "id", timerId, "startTime", entry.startTime);
+        } else {
+            TimerLog.d(TAG, "Timer already running, keeping existing startTime", "id", timerId, "startTime", entry.startTime);
+        }
+        
+        if (title == null) title = "Timer activo";
+        if (primaryColor == null) primaryColor = "#0045a5";
+        if (!isNew) {
+            if (!title.equals(entry.title)) journal.appendTitle(timerId, title);
+            if (!primaryColor.equals(entry.primaryColor)) journal.appendColor(timerId, primaryColor);
+            if (request.rules != null && !request.rules.sameAs(entry.rules)) {
+                // Reglas nuevas a mitad de jornada: los umbrales ya pasados no avisan
+                entry.rules = request.rules;
+                entry.rules.compile(entry.getElapsed(clock.elapsedRealtime()), entry.closedTotal);
+                journal.appendRules(timerId, entry.rules);
+            }
+        }
+        
+        entry.title = title;
+        entry.body = body != null ? body : "00:00:00";
+        entry.primaryColor = primaryColor;
+        if (!isNew) {
+            journal.compactIfNeeded(timers.values());
+        }
+        
+        TimerLog.d(TAG, "Starting timer", "primaryColor", entry.primaryColor);
+
+        // Defensive guard: abort if notification permission is missing
+        if (!hasNotificationPermission()) {
+            TimerLog.w(TAG, "handleStartTimer: notification permission missing, not starting timer", "id", timerId);
+            return false;
+        }
+
+        if (isNew) {
+            synchronized (timers) {
+                timers.put(timerId, entry);
+            }
+            journal.appendStart(entry);
+            outbox.enqueue(ClockOutbox.EVENT_START, timerId, entry.startTime);
+        }
+        startTimerUpdates(entry);
+        if (isNew && request.requestedAtNanos > 0) {
+            TimerMetrics.STARTUP_RICH.recordNanos(System.nanoTime() - request.requestedAtNanos);
+        }
+        publishState();
+        return true;
+    }
+
+    private void handleUpdateTitle(String timerId, String title) {
+        TimerEntry entry = timers.get(timerId);
+        if (entry == null) {
+            TimerLog.d(TAG, "UPDATE_NOTIFICATION: timer not running", "id", timerId);
+            return;
+        }
+        
+        if (title == null) title = "Timer activo";
+        if (!title.equals(entry.title)) {
+            journal.appendTitle(timerId, title);
+            journal.compactIfNeeded(timers.values());
+        }
+        entry.title = title;
+        
+        // Calcular el tiempo transcurrido basado en el startTime interno del timer
+        long elapsed = entry.getElapsed(clock.elapsedRealtime());
+        entry.body = entry.formatter.formatElapsed(elapsed);
+        TimerLog.d(TAG, "UPDATE_NOTIFICATION: calculated time", "body", entry.body, "elapsedMs", elapsed);
+        
+        // Tick inmediato; el siguiente vuelve a alinearse con el cambio de minuto
+        scheduler.schedule(entry, 0);
+        updateGroupSummary();
+        publishState();
+    }
+
+    private void handlePauseTimer(String timerId) {
+        TimerEntry entry = timers.get(timerId);
+        if (entry == null) {
+            TimerLog.d(TAG, "PAUSE_TIMER: timer not running", "id", timerId);
+            return;
+        }
+        long now = clock.elapsedRealtime();
+        if (!entry.pause(now)) {
+            TimerLog.d(TAG, "PAUSE_TIMER: timer already paused", "id", timerId);
+            return;
+        }
+        TimerLog.d(TAG, "⏸️ Timer paused", "id", timerId, "elapsedMs", entry.getElapsed(now));
+        if (entry.rules != null) {
+            entry.rules.onPause();
+        }
+        journal.appendPause(timerId, now);
+        outbox.enqueue(ClockOutbox.EVENT_PAUSE, timerId, clock.wallTime());
+        journal.compactIfNeeded(timers.values());
+        
+        // Un tick inmediato pinta el valor congelado; onTimerDue no reprograma mientras esté en pausa
+        scheduler.schedule(entry, 0);
+        publishState();
+    }
+
+    private void handleResumeTimer(String timerId) {
+        TimerEntry entry = timers.get(timerId);
+        if (entry == null) {
+            TimerLog.d(TAG, "RESUME_TIMER: timer not running", "id", timerId);
+            return;
+        }
+        long now = clock.elapsedRealtime();
+        if (!entry.resume(now)) {
+            TimerLog.d(TAG, "RESUME_TIMER: timer not paused", "id", timerId);
+            return;
+        }
+        TimerLog.d(TAG, "▶️ Timer resumed", "id", timerId, "elapsedMs", entry.getElapsed(now));
+        if (entry.rules != null) {
+            // El descanso obligatorio se vuelve a contar desde esta reanudación
+            entry.rules.compile(entry.getElapsed(now), entry.closedTotal);
+        }
+        journal.appendResume(timerId, now);
+        outbox.enqueue(ClockOutbox.EVENT_RESUME, timerId, clock.wallTime());
+        journal.compactIfNeeded(timers.values());
+        
+        scheduler.schedule(entry, 0);
+        publishState();
+    }
+
+    /**
+     * Para un timer (o todos con timerId null). Un id desconocido se ignora.
+     * @return true si ya no queda ningún timer y el servicio debe detenerse
+     */
+    private boolean handleStopTimer(String timerId) {
+        if (timerId == null) {
             stopTimerUpdates();
-            stopSelf();
-            return START_NOT_STICKY;
+            return true;
+        }
+        if (!timers.containsKey(timerId)) {
+            TimerLog.d(TAG, "STOP_TIMER: timer not running", "id", timerId);
+            return timers.isEmpty();
+        }
+        if (timers.size() == 1) {
+            // Era el último: misma limpieza que parar todos
+            stopTimerUpdates();
+            return true;
+        }
+        removeTimer(timerId);
+        return false;
+    }
+
+    /**
+     * 📒 Recupera los timers que seguían activos cuando Android mató el proceso
+     */
+    private void restoreFromJournal() {
+        journal = new TimerJournal(new File(getFilesDir(), JOURNAL_FILE));
+        Map<String, TimerEntry> restored = journal.replay();
+        if (restored.isEmpty()) {
+            return;
         }
         
-        return START_STICKY;
+        int bootCount = getBootCount();
+        synchronized (timers) {
+            for (TimerEntry entry : restored.values()) {
+                boolean sameBoot = bootCount >= 0 && entry.anchorBootCount >= 0
+                        ? entry.anchorBootCount == bootCount
+                        : entry.isAnchoredInThisBoot(clock.wallTime(), clock.elapsedRealtime(), REBOOT_DETECTION_TOLERANCE_MS);
+                if (!sameBoot) {
+                    // El dispositivo se reinició (elapsedRealtime volvió a 0): re-anclar con el reloj de pared
+                    entry.anchor(clock.wallTime(), clock.elapsedRealtime(), bootCount);
+                    journal.appendAnchor(entry);
+                }
+                entry.startTimeFormatted = formatStartTime(entry);
+                if (entry.rules != null) {
+                    // Los umbrales que pasaron con el proceso muerto no se re-emiten
+                    entry.rules.compile(entry.getElapsed(clock.elapsedRealtime()), entry.closedTotal);
+                }
+                timers.put(entry.id, entry);
+                if (entry.notificationId >= nextNotificationId) {
+                    nextNotificationId = entry.notificationId + 1;
+                }
+            }
+        }
+        // El tiempo transcurrido es correcto desde ya, aunque la notificación llegue en onStartCommand
+        serviceRunning = true;
+        restorePending = true;
+        TimerMetrics.restarts.incrementAndGet();
+        publishState();
+        TimerLog.i(TAG, "Restored timers from journal", "count", restored.size());
     }
 
-    private void startTimerUpdates() {
-        Log.d(TAG, "Starting timer updates");
+    private void resumeRestoredTimers() {
+        restorePending = false;
+        if (!hasNotificationPermission()) {
+            TimerLog.w(TAG, "resumeRestoredTimers: notification permission missing");
+            return;
+        }
+        try {
+            for (TimerEntry entry : new ArrayList<>(timers.values())) {
+                startTimerUpdates(entry);
+            }
+        } catch (Exception e) {
+            TimerLog.e(TAG, "Error resuming restored timers", e);
+        }
+    }
+
+    /**
+     * Nº de arranques del dispositivo, para saber si un ancla de elapsedRealtime sigue siendo válida
+     */
+    private int getBootCount() {
+        try {
+            return Settings.Global.getInt(getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+        } catch (Exception e) {
+            TimerLog.w(TAG, "Error reading boot count", e);
+            return -1;
+        }
+    }
+
+    /**
+     * El timer por defecto conserva el ID histórico; el resto recibe slots consecutivos
+     */
+    private int allocateNotificationId(String timerId) {
+        if (DEFAULT_TIMER_ID.equals(timerId)) {
+            return NOTIFICATION_ID;
+        }
+        return nextNotificationId++;
+    }
+
+    private void startTimerUpdates(TimerEntry entry) {
+        TimerLog.d(TAG, "Starting timer updates", "id", entry.id);
         serviceRunning = true;
         
         // Crear la notificación inicial
-        Notification notification = createNotification(currentTitle, currentBody);
-        startForeground(NOTIFICATION_ID, notification);
-        
-        // Configurar las actualizaciones periódicas
-        updateRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (serviceRunning) {
-                    // Calcular tiempo transcurrido usando timestamps (siempre necesario)
-                    long elapsed = System.currentTimeMillis() - startTime;
-                    String formattedTime = formatTime(elapsed);
-                    
-                    // 🆕 Solo actualizar si la notificación no ha sido descartada
-                    if (!notificationDismissed) {
-                        // Verificar que la notificación siga existiendo
-                        ensureNotificationExists();
-                        
-                        Log.d(TAG, "Timer update: " + formattedTime + " (dismissed: " + notificationDismissed + ", foreground: " + appInForeground + ")");
-                        
-                        // Actualizar la notificación
-                        updateNotification(currentTitle, formattedTime);
-                    } else {
-                        Log.d(TAG, "Notification dismissed - skipping update and notification recreation");
+        Notification notification = createNotification(entry);
+        entry.renderedFingerprint = visibleFingerprint(entry, entry.getElapsed(clock.elapsedRealtime()));
+        long notifyStart = System.nanoTime();
+        Trace.beginSection(TimerMetrics.TRACE_NOTIFY);
+        notifyLimiter.consume();
+        try {
+            if (foregroundTimer == null || foregroundTimer == entry) {
+                startForeground(entry.notificationId, notification);
+                foregroundTimer = entry;
+                foregroundStarted = true;
+                if (placeholderShown) {
+                    // La notificación completa sustituye a la mínima del arranque
+                    placeholderShown = false;
+                    if (entry.notificationId != NOTIFICATION_ID) {
+                        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+                        if (manager != null) {
+                            manager.cancel(NOTIFICATION_ID);
+                        }
                     }
-                    
-                    // Notificar al plugin (si está disponible)
-                    NativeTimerPlugin.notifyTimerUpdate(elapsed, formattedTime);
-                    
-                    // 🆕 Programar siguiente actualización con intervalo adaptativo
-                    long updateInterval = getUpdateInterval();
-                    handler.postDelayed(this, updateInterval);
+                }
+            } else {
+                NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+                if (manager != null) {
+                    manager.notify(entry.notificationId, notification);
                 }
             }
-        };
+        } finally {
+            Trace.endSection();
+            TimerMetrics.NOTIFY.recordNanos(System.nanoTime() - notifyStart);
+        }
+        updateGroupSummary();
         
-        // Iniciar las actualizaciones inmediatamente
-        handler.post(updateRunnable);
+        // Todas las actualizaciones periódicas pasan por el planificador compartido
+        scheduler.schedule(entry, 0);
     }
-    
+
     /**
-     * ⚡ Intervalo de actualización simplificado
+     * Tick de un timer: llamado por el planificador compartido cuando vence.
+     * Mide la duración completa del tick y la marca como sección de Trace.
      */
-    private long getUpdateInterval() {
-        // Intervalo simple cada 30 segundos
-        return 30 * 1000; // 30 segundos
+    private long onTimerDue(TimerEntry entry) {
+        long tickStart = System.nanoTime();
+        Trace.beginSection(TimerMetrics.TRACE_TICK);
+        try {
+            return handleTimerDue(entry);
+        } finally {
+            Trace.endSection();
+            TimerMetrics.ticks.incrementAndGet();
+            TimerMetrics.TICK.recordNanos(System.nanoTime() - tickStart);
+        }
     }
 
-    private void stopTimerUpdates() {
-        Log.d(TAG, "Stopping timer updates");
-        serviceRunning = false;
+    private long handleTimerDue(TimerEntry entry) {
+        if (!serviceRunning) {
+            return -1;
+        }
         
-        if (handler != null && updateRunnable != null) {
-            handler.removeCallbacks(updateRunnable);
+        // Calcular tiempo transcurrido usando timestamps (siempre necesario)
+        long elapsed = entry.getElapsed(clock.elapsedRealtime());
+        String formattedTime = entry.formatter.formatElapsed(elapsed);
+        
+        // 🚦 Una comparación por tick; el render cache detecta el cambio de estado
+        if (entry.rules != null && entry.rules.isDue(elapsed)) {
+            entry.rules.evaluate(elapsed, (rule, threshold) -> onThresholdCrossed(entry, rule, threshold, elapsed));
         }
         
-        stopForeground(true);
+        // 🆕 Solo actualizar si la notificación no ha sido descartada
+        boolean deferred = false;
+        if (!entry.notificationDismissed) {
+            TimerLog.d(TAG, "Timer update", "id", entry.id, "time", formattedTime);
+            
+            // Actualizar la notificación
+            deferred = updateNotification(entry);
+        } else {
+            TimerLog.d(TAG, "Notification dismissed - skipping update and notification recreation", "id", entry.id);
+        }
+        
+        // Notificar al plugin (si está disponible)
+        NativeTimerPlugin.notifyTimerUpdate(entry.id, elapsed, formattedTime);
+        
+        updateBackstop();
+        
+        // 🆕 Programar siguiente actualización alineada con el próximo cambio visible
+        long delay = getUpdateDelay(entry, elapsed);
+        if (deferred) {
+            // 🪣 Sin token: reintentar en cuanto haya uno para que el estado final siempre se vea
+            long retry = notifyLimiter.delayUntilNext();
+            delay = delay < 0 ? retry : Math.min(delay, retry);
+        }
+        return delay;
     }
 
-    // ✅ Canal de notificación eliminado - ahora usa el de Capacitor
+    private void onThresholdCrossed(TimerEntry entry, int rule, long thresholdMs, long elapsed) {
+        String ruleName = TimerRules.ruleName(rule);
+        TimerLog.i(TAG, "🚦 Threshold crossed", "id", entry.id, "rule", ruleName);
+        NativeTimerPlugin.notifyThreshold(entry.id, ruleName, thresholdMs, elapsed);
+        publishState();
+    }
 
-    private Notification createNotification(String title, String body) {
-        Log.d(TAG, "🔔 Creating notification");
+    /**
+     * 📸 Publica el estado para widgets y tiles. Solo en cambios de estado, no en cada tick:
+     * TimerStateStore descarta la foto si nada visible cambió.
+     */
+    private void publishState() {
+        long wallNow = clock.wallTime();
+        long now = clock.elapsedRealtime();
+        TimerState.Timer[] published = new TimerState.Timer[timers.size()];
+        int i = 0;
+        for (TimerEntry entry : timers.values()) {
+            long elapsed = entry.getElapsed(now);
+            boolean paused = entry.isPaused();
+            published[i++] = new TimerState.Timer(entry.id, entry.title, entry.primaryColor, entry.startTime, paused,
+                    entry.rules != null ? entry.rules.getCrossed() : 0, wallNow - elapsed, paused ? elapsed : 0);
+        }
+        TimerStateStore.publish(this, published);
+    }
+
+    /**
+     * ⏰ Mantiene la alarma de respaldo en el próximo cambio visible, solo mientras el proceso
+     * pueda congelarse (app en segundo plano o pantalla apagada). En primer plano con la
+     * pantalla encendida el Handler basta y no se arma nada.
+     */
+    private void updateBackstop() {
+        if (!serviceRunning || (appInForeground && screenInteractive)) {
+            backstop.cancel();
+            return;
+        }
+        long now = clock.elapsedRealtime();
+        long nextBoundary = Long.MAX_VALUE;
+        for (TimerEntry entry : timers.values()) {
+            if (entry.notificationDismissed) {
+                continue; // Nada visible que refrescar
+            }
+            long delay = getUpdateDelay(entry, entry.getElapsed(now));
+            if (delay >= 0) {
+                nextBoundary = Math.min(nextBoundary, now + delay);
+            }
+        }
+        if (nextBoundary == Long.MAX_VALUE) {
+            backstop.cancel();
+        } else {
+            backstop.arm(nextBoundary);
+        }
+    }
+    
+    /**
+     * ⚡ Retardo hasta el próximo cambio visible del texto "X h Y min" (-1 si está en pausa).
+     * El formato siempre cambia en el siguiente minuto ("X h" pasa a "X h 1 min"), así que
+     * con pantalla encendida se alinea al minuto; apagada, a bloques de 15 minutos.
+     * Al encender la pantalla se fuerza un tick inmediato (ver registerScreenReceiver).
+     * Si un umbral de las reglas llega antes, el tick cae justo en él.
+     */
+    private long getUpdateDelay(TimerEntry entry, long elapsed) {
+        if (entry.isPaused()) {
+            // Valor congelado: no hay nada que refrescar hasta resumeTimer
+            return -1;
+        }
+        if (elapsed < 0) {
+            // startTime en el futuro: esperar al inicio
+            return -elapsed + BOUNDARY_SLACK_MS;
+        }
+        long alignment = screenInteractive ? MINUTE_MS : SCREEN_OFF_ALIGNMENT_MS;
+        long delay = alignment - (elapsed % alignment) + BOUNDARY_SLACK_MS;
+        if (entry.rules != null) {
+            long untilThreshold = entry.rules.delayToNext(elapsed);
+            if (untilThreshold >= 0) {
+                delay = Math.min(delay, untilThreshold + BOUNDARY_SLACK_MS);
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * 📱 Sigue el estado de la pantalla sin consultar PowerManager en cada tick
+     */
+    private void registerScreenReceiver() {
+        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        screenInteractive = powerManager == null || powerManager.isInteractive();
         
-        // Intentar crear notificación personalizada primero
-        try {
-            return createCustomNotification(title, body);
-        } catch (Exception e) {
-            Log.w(TAG, "⚠️ Custom notification failed, using simple fallback", e);
-            return createSimpleNotification(title, body);
+        IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        ContextCompat.registerReceiver(this, screenReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    private final BroadcastReceiver screenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            screenInteractive = Intent.ACTION_SCREEN_ON.equals(intent.getAction());
+            TimerLog.d(TAG, "Screen state changed", "interactive", screenInteractive);
+            if (screenInteractive) {
+                // Refrescar ya: con pantalla apagada los ticks se espaciaron
+                handler.post(() -> {
+                    for (TimerEntry entry : timers.values()) {
+                        scheduler.schedule(entry, 0);
+                    }
+                });
+            } else {
+                // Posible Doze a partir de ahora
+                handler.post(NativeTimerService.this::updateBackstop);
+            }
+        }
+    };
+
+    /**
+     * Detiene un timer concreto manteniendo el servicio para el resto
+     */
+    private void removeTimer(String timerId) {
+        TimerEntry entry;
+        synchronized (timers) {
+            entry = timers.remove(timerId);
+        }
+        if (entry == null) {
+            return;
+        }
+        TimerLog.d(TAG, "Stopping timer", "id", timerId);
+        scheduler.cancel(entry);
+        recordSession(entry);
+        journal.appendStop(timerId);
+        journal.compactIfNeeded(timers.values());
+        
+        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        if (entry == foregroundTimer) {
+            // Traspasar el foreground service al siguiente timer activo
+            foregroundTimer = timers.values().iterator().next();
+            startForeground(foregroundTimer.notificationId, createNotification(foregroundTimer));
+            foregroundTimer.renderedFingerprint = visibleFingerprint(foregroundTimer, foregroundTimer.getElapsed(clock.elapsedRealtime()));
         }
+        if (manager != null) {
+            manager.cancel(entry.notificationId);
+        }
+        updateGroupSummary();
+        updateBackstop();
+        publishState();
     }
 
     /**
-     * 🎨 Crear notificación personalizada con vista custom
+     * 🗂️ Guarda la sesión terminada en el histórico local (antes del STOP del journal)
+     * y encola el fichaje de salida
+     */
+    private void recordSession(TimerEntry entry) {
+        if (sessionStore == null) {
+            sessionStore = SessionStore.getInstance(this);
+        }
+        long endTime = clock.wallTime();
+        long activeMs = Math.max(0, entry.getElapsed(clock.elapsedRealtime()));
+        sessionStore.record(entry.id, entry.startTime, endTime, activeMs, entry.segmentCount / 2);
+        outbox.enqueue(ClockOutbox.EVENT_STOP, entry.id, endTime);
+    }
+
+    /**
+     * Vacía el mapa bajo el lock y guarda las sesiones después: SessionStore hace fsync y
+     * los hilos del binder (getElapsedTime, getTimers) esperan por ese mismo lock
      */
-    private Notification createCustomNotification(String title, String body) {
-        Log.d(TAG, "🔔 Creating CUSTOM timer notification");
+    private void clearTimersAndRecordSessions() {
+        List<TimerEntry> stopped;
+        synchronized (timers) {
+            stopped = new ArrayList<>(timers.values());
+            timers.clear();
+        }
+        for (TimerEntry entry : stopped) {
+            recordSession(entry);
+        }
+    }
+
+    private void stopTimerUpdates() {
+        TimerLog.d(TAG, "Stopping timer updates");
+        serviceRunning = false;
         
-        // 🔗 Intent usando deep link para clock-in
-        Intent notificationIntent = new Intent(Intent.ACTION_VIEW);
-        notificationIntent.setData(android.net.Uri.parse("https://developjesushr.com/clock-in"));
-        notificationIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        if (scheduler != null) {
+            scheduler.cancelAll();
+        }
         
-        // 🔍 Debug logs para verificar Intent
-        Log.d(TAG, "🔗 Intent using deep link: https://developjesushr.com/clock-in");
-        Log.d(TAG, "🎯 Intent Action: " + notificationIntent.getAction());
-        Log.d(TAG, "🎯 Intent Data: " + notificationIntent.getData());
+        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        if (manager != null) {
+            for (TimerEntry entry : timers.values()) {
+                if (entry != foregroundTimer) {
+                    manager.cancel(entry.notificationId);
+                }
+            }
+            manager.cancel(SUMMARY_NOTIFICATION_ID);
+            summaryShown = false;
+        }
+        clearTimersAndRecordSessions();
+        foregroundTimer = null;
+        journal.clear();
+        backstop.cancel();
+        publishState();
         
-        PendingIntent pendingIntent = PendingIntent.getActivity(
-            this, 
-            1001, 
-            notificationIntent, 
-            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
+        stopForeground(true);
+        foregroundStarted = false;
+        placeholderShown = false;
+    }
 
-        // Crear vista personalizada
-        RemoteViews compactView = createCompactNotificationView();
-        RemoteViews expandedView = createExpandedNotificationView();
+    /**
+     * 📚 Notificación resumen del grupo cuando hay más de un timer activo.
+     * Solo se publica (o se cancela) cuando cambia lo que muestra: nº de timers, títulos o color.
+     */
+    private void updateGroupSummary() {
+        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        if (manager == null) {
+            return;
+        }
+        if (timers.size() < 2) {
+            if (summaryShown) {
+                manager.cancel(SUMMARY_NOTIFICATION_ID);
+                summaryShown = false;
+            }
+            return;
+        }
+        
+        int color = foregroundTimer != null ? getRenderCache(foregroundTimer).color : 0xFF0045a5;
+        long fingerprint = 31L * timers.size() + color;
+        for (TimerEntry entry : timers.values()) {
+            fingerprint = 31 * fingerprint + entry.title.hashCode();
+        }
+        if (summaryShown && fingerprint == summaryFingerprint) {
+            return;
+        }
+        
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (TimerEntry entry : timers.values()) {
+            style.addLine(entry.title);
+        }
         
-        // ⏱️ CREAR NOTIFICACIÓN CON VISTA PERSONALIZADA
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+        String summaryText = timers.size() + " timers activos";
+        Notification summary = new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle("⏰ JORNADA ACTIVA")
-                .setContentText("Timer en progreso") 
+                .setContentText(summaryText)
                 .setSmallIcon(android.R.drawable.ic_menu_agenda)
-                .setColor(parseColor(currentPrimaryColor))
-                .setColorized(true)
-                .setContentIntent(pendingIntent)
-                .setCustomContentView(compactView)          // Vista compacta (colapsada)
-                .setCustomBigContentView(expandedView)      // Vista expandida (desplegada)
-                .setStyle(new NotificationCompat.DecoratedCustomViewStyle())
+                .setColor(color)
+                .setStyle(style.setSummaryText(summaryText))
+                .setGroup(GROUP_KEY)
+                .setGroupSummary(true)
                 .setOngoing(true)
-                .setAutoCancel(false)
                 .setSilent(true)
                 .setOnlyAlertOnce(true)
-                .setShowWhen(true)
-                .setWhen(startTime)
-                .setUsesChronometer(true)    // ⭐ El timer se actualiza automáticamente
-                .setChronometerCountDown(false)
                 .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
                 .setCategory(NotificationCompat.CATEGORY_SERVICE)
-                .setForegroundServiceBehavior(NotificationCompat.FOREGROUND_SERVICE_IMMEDIATE)
-                .setDeleteIntent(null);
+                .build();
+        notifyLimiter.consume();
+        manager.notify(SUMMARY_NOTIFICATION_ID, summary);
+        summaryShown = true;
+        summaryFingerprint = fingerprint;
+    }
 
-        // 🔒 CONFIGURACIÓN ADICIONAL PARA PANTALLA DE BLOQUEO
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            builder.setPublicVersion(builder.build());
-        }
-        
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            builder.setBadgeIconType(NotificationCompat.BADGE_ICON_SMALL);
-            builder.setChannelId(CHANNEL_ID);
+    // ✅ Canal de notificación eliminado - ahora usa el de Capacitor
+
+    private Notification createNotification(TimerEntry entry) {
+        long renderStart = System.nanoTime();
+        Trace.beginSection(TimerMetrics.TRACE_RENDER);
+        // Intentar crear notificación personalizada primero
+        try {
+            return createCustomNotification(entry);
+        } catch (Exception e) {
+            TimerLog.w(TAG, "⚠️ Custom notification failed, using simple fallback", e);
+            return createSimpleNotification(entry);
+        } finally {
+            Trace.endSection();
+            TimerMetrics.RENDER.recordNanos(System.nanoTime() - renderStart);
         }
-        
-        Log.d(TAG, "✅ Custom timer notification created");
-        return builder.build();
     }
 
     /**
-     * 📱 Crear notificación simple como fallback
+     * 🔗 PendingIntent del deep link de clock-in, creado una sola vez por proceso
+     * (se pide desde el main thread en el arranque rápido y desde el hilo del servicio)
      */
-    private Notification createSimpleNotification(String title, String body) {
-        Log.d(TAG, "🔔 Creating SIMPLE chronometer notification (fallback)");
+    private static synchronized PendingIntent getContentIntent(Context context, int requestCode) {
+        PendingIntent cached = requestCode == 1001 ? customContentIntent : simpleContentIntent;
+        if (cached != null) {
+            return cached;
+        }
         
         // 🔗 Intent usando deep link para clock-in
         Intent notificationIntent = new Intent(Intent.ACTION_VIEW);
         notificationIntent.setData(android.net.Uri.parse("https://developjesushr.com/clock-in"));
         notificationIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
         
-        // 🔍 Debug logs para verificar Intent
-        Log.d(TAG, "🔗 Intent using deep link: https://developjesushr.com/clock-in");
-        Log.d(TAG, "🎯 Intent Action: " + notificationIntent.getAction());
-        Log.d(TAG, "🎯 Intent Data: " + notificationIntent.getData());
+        TimerLog.d(TAG, "🔗 Content intent created", "requestCode", requestCode, "data", notificationIntent.getData());
         
         PendingIntent pendingIntent = PendingIntent.getActivity(
-            this, 
-            1002, 
+            context.getApplicationContext(), 
+            requestCode, 
             notificationIntent, 
             PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
+        if (requestCode == 1001) {
+            customContentIntent = pendingIntent;
+        } else {
+            simpleContentIntent = pendingIntent;
+        }
+        return pendingIntent;
+    }
 
-        // 🎨 Formatear tiempo de inicio para mostrar
-        String startTimeText = "Inicio: " + formatStartTime(startTime);
+    /**
+     * Invalida la caché de render si cambió título, color, inicio o pausa del timer
+     */
+    private NotificationRenderCache getRenderCache(TimerEntry entry) {
+        NotificationRenderCache cache = entry.renderCache;
+        if (!cache.isValidFor(entry)) {
+            // Base del cronómetro en reloj de pared: ahora menos el tiempo activo acumulado
+            long chronometerBase = clock.wallTime() - entry.getElapsed(clock.elapsedRealtime());
+            cache.bind(entry, parseColor(entry.primaryColor), "Inicio: " + entry.startTimeFormatted, chronometerBase);
+        }
+        return cache;
+    }
+
+    /**
+     * 🎨 Crear notificación personalizada con vista custom
+     *
+     * El Builder, el PendingIntent, el color y la versión pública se reutilizan entre ticks;
+     * solo se regeneran las RemoteViews con el texto y el progreso actuales. Las RemoteViews
+     * no se reutilizan porque cada setTextViewText añade una acción nueva a la instancia.
+     */
+    private Notification createCustomNotification(TimerEntry entry) {
+        NotificationRenderCache cache = getRenderCache(entry);
+        NotificationCompat.Builder builder = cache.customBuilder;
         
-        // ⏱️ CREAR NOTIFICACIÓN SIMPLE CON CHRONOMETER (como iOS)
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("⏰ JORNADA ACTIVA")
-                .setContentText(startTimeText) // Timer aparece automáticamente antes del texto por chronometer
-                .setSmallIcon(android.R.drawable.ic_menu_agenda) // 📅 Icono de agenda/horario
-                .setColor(parseColor(currentPrimaryColor))
-                .setColorized(true)
-                .setContentIntent(pendingIntent)
-                .setOngoing(true)
-                .setAutoCancel(false)
-                .setSilent(true)
-                .setOnlyAlertOnce(true) // 🔇 Solo alertar una vez, no en actualizaciones posteriores
-                .setShowWhen(true)           // 🆕 Mostrar tiempo
-                .setWhen(startTime)          // 🆕 Tiempo de referencia
-                .setUsesChronometer(true)    // 🆕 ¡CHRONOMETER! Como iOS - aparece antes del texto
-                .setChronometerCountDown(false) // Contar hacia arriba
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC) // 🔒 Visible en pantalla de bloqueo
-                .setPriority(NotificationCompat.PRIORITY_HIGH) // 🔒 Alta prioridad SOLO para creación inicial
-                .setCategory(NotificationCompat.CATEGORY_SERVICE)
-                .setForegroundServiceBehavior(NotificationCompat.FOREGROUND_SERVICE_IMMEDIATE)
-                .setDeleteIntent(null);
+        if (builder == null) {
+            TimerLog.d(TAG, "🔔 Creating CUSTOM timer notification builder", "id", entry.id);
+            
+            // ⏱️ CREAR NOTIFICACIÓN CON VISTA PERSONALIZADA
+            boolean running = !entry.isPaused();
+            builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                    .setContentTitle(getStatusTitle(running, cache.crossedRules))
+                    .setContentText(running ? "Timer en progreso" : "Timer en pausa") 
+                    .setSmallIcon(android.R.drawable.ic_menu_agenda)
+                    .setColor(cache.color)
+                    .setColorized(true)
+                    .setContentIntent(getContentIntent(this, 1001))
+                    .setStyle(new NotificationCompat.DecoratedCustomViewStyle())
+                    .setOngoing(true)
+                    .setAutoCancel(false)
+                    .setSilent(true)
+                    .setOnlyAlertOnce(true)
+                    .setShowWhen(running)
+                    .setWhen(cache.chronometerBase)
+                    .setUsesChronometer(running)    // ⭐ El timer se actualiza automáticamente (congelado en pausa)
+                    .setChronometerCountDown(false)
+                    .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                    .setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setCategory(NotificationCompat.CATEGORY_SERVICE)
+                    .setForegroundServiceBehavior(NotificationCompat.FOREGROUND_SERVICE_IMMEDIATE)
+                    .setGroup(GROUP_KEY)
+                    .setSortKey(entry.id)
+                    .setDeleteIntent(getDeleteIntent(entry));
 
-        // 🔒 CONFIGURACIÓN ADICIONAL PARA PANTALLA DE BLOQUEO
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            // Android 5.0+ - Configuración específica para pantalla de bloqueo
-            builder.setPublicVersion(builder.build()); // Versión pública para pantalla de bloqueo
+            // 🔒 CONFIGURACIÓN ADICIONAL PARA PANTALLA DE BLOQUEO
+            // Con VISIBILITY_PUBLIC la versión pública no muestra las vistas custom: basta construirla una vez
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                builder.setPublicVersion(builder.build());
+            }
+            
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                builder.setBadgeIconType(NotificationCompat.BADGE_ICON_SMALL);
+                builder.setChannelId(CHANNEL_ID);
+            }
+            cache.customBuilder = builder;
         }
         
-        // 🔒 Para Android 8.0+ - Asegurar que aparezca en pantalla de bloqueo
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            builder.setBadgeIconType(NotificationCompat.BADGE_ICON_SMALL);
-            builder.setChannelId(CHANNEL_ID);
+        // Parchear solo lo que cambia en cada tick
+        long elapsedTimeMs = entry.getElapsed(clock.elapsedRealtime());
+        String currentTime = entry.formatter.formatElapsed(elapsedTimeMs);
+        builder.setCustomContentView(createCompactNotificationView(currentTime))          // Vista compacta (colapsada)
+                .setCustomBigContentView(createExpandedNotificationView(cache, elapsedTimeMs, currentTime)); // Vista expandida (desplegada)
+        
+        return builder.build();
+    }
+
+    /**
+     * 📱 Crear notificación simple como fallback
+     */
+    private Notification createSimpleNotification(TimerEntry entry) {
+        NotificationRenderCache cache = getRenderCache(entry);
+        NotificationCompat.Builder builder = cache.simpleBuilder;
+        
+        if (builder == null) {
+            TimerLog.d(TAG, "🔔 Creating SIMPLE chronometer notification builder (fallback)", "id", entry.id);
+            
+            // ⏱️ CREAR NOTIFICACIÓN SIMPLE CON CHRONOMETER (como iOS)
+            boolean running = !entry.isPaused();
+            builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                    .setContentTitle(getStatusTitle(running, cache.crossedRules))
+                    .setContentText(running ? cache.startTimeText // Timer aparece automáticamente antes del texto por chronometer
+                            : entry.formatter.formatElapsed(entry.getElapsed(clock.elapsedRealtime())) + " · " + cache.startTimeText)
+                    .setSmallIcon(android.R.drawable.ic_menu_agenda) // 📅 Icono de agenda/horario
+                    .setColor(cache.color)
+                    .setColorized(true)
+                    .setContentIntent(getContentIntent(this, 1002))
+                    .setOngoing(true)
+                    .setAutoCancel(false)
+                    .setSilent(true)
+                    .setOnlyAlertOnce(true) // 🔇 Solo alertar una vez, no en actualizaciones posteriores
+                    .setShowWhen(running)           // 🆕 Mostrar tiempo
+                    .setWhen(cache.chronometerBase)          // 🆕 Tiempo de referencia (descontando pausas)
+                    .setUsesChronometer(running)    // 🆕 ¡CHRONOMETER! Como iOS - aparece antes del texto
+                    .setChronometerCountDown(false) // Contar hacia arriba
+                    .setVisibility(NotificationCompat.VISIBILITY_PUBLIC) // 🔒 Visible en pantalla de bloqueo
+                    .setPriority(NotificationCompat.PRIORITY_HIGH) // 🔒 Alta prioridad SOLO para creación inicial
+                    .setCategory(NotificationCompat.CATEGORY_SERVICE)
+                    .setForegroundServiceBehavior(NotificationCompat.FOREGROUND_SERVICE_IMMEDIATE)
+                    .setGroup(GROUP_KEY)
+                    .setSortKey(entry.id)
+                    .setDeleteIntent(getDeleteIntent(entry));
+
+            // 🔒 CONFIGURACIÓN ADICIONAL PARA PANTALLA DE BLOQUEO
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                // Android 5.0+ - Configuración específica para pantalla de bloqueo
+                builder.setPublicVersion(builder.build()); // Versión pública para pantalla de bloqueo
+            }
+            
+            // 🔒 Para Android 8.0+ - Asegurar que aparezca en pantalla de bloqueo
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                builder.setBadgeIconType(NotificationCompat.BADGE_ICON_SMALL);
+                builder.setChannelId(CHANNEL_ID);
+            }
+            cache.simpleBuilder = builder;
         }
         
-        Log.d(TAG, "✅ Simple chronometer notification created");
         return builder.build();
     }
 
+    /**
+     * 🚦 Título según el estado de la jornada: el umbral superado más grave manda
+     */
+    private static String getStatusTitle(boolean running, int crossedRules) {
+        if (!running) {
+            return "⏸️ JORNADA EN PAUSA";
+        }
+        if ((crossedRules & TimerRules.HARD_CAP) != 0) {
+            return "⛔ LÍMITE DE JORNADA ALCANZADO";
+        }
+        if ((crossedRules & TimerRules.OVERTIME_WARNING) != 0) {
+            return "⚠️ HORAS EXTRA";
+        }
+        if ((crossedRules & TimerRules.BREAK_REQUIRED) != 0) {
+            return "☕ DESCANSO OBLIGATORIO";
+        }
+        if ((crossedRules & TimerRules.TARGET) != 0) {
+            return "✅ JORNADA COMPLETADA";
+        }
+        return "⏰ JORNADA ACTIVA";
+    }
+
     /**
      * 📱 Crear vista compacta para notificación colapsada
      */
-    private RemoteViews createCompactNotificationView() {
+    private RemoteViews createCompactNotificationView(String currentTime) {
         RemoteViews compactView = new RemoteViews(getPackageName(), R.layout.notification_timer_compact);
         
         try {
             // Configurar timer actual en la vista compacta
-            long elapsedTimeMs = System.currentTimeMillis() - startTime;
-            String currentTime = formatTime(elapsedTimeMs);
             compactView.setTextViewText(R.id.timer_compact, currentTime);
-            
-            Log.d(TAG, "✅ Compact view configured with timer: " + currentTime);
-            
         } catch (Exception e) {
-            Log.e(TAG, "❌ Error configuring compact view", e);
+            TimerLog.e(TAG, "❌ Error configuring compact view", e);
         }
         
         return compactView;
@@ -383,30 +1284,24 @@ public class NativeTimerService extends Service {
     /**
      * 🎨 Crear vista expandida para notificación desplegada
      */
-    private RemoteViews createExpandedNotificationView() {
+    private RemoteViews createExpandedNotificationView(NotificationRenderCache cache, long elapsedTimeMs, String currentTime) {
         RemoteViews expandedView = new RemoteViews(getPackageName(), R.layout.notification_timer);
         
         try {
-            // Configurar tiempo de inicio
-            String startTimeText = "Inicio: " + formatStartTime(startTime);
-            expandedView.setTextViewText(R.id.start_time, startTimeText);
+            // Configurar tiempo de inicio (texto cacheado por sesión)
+            expandedView.setTextViewText(R.id.start_time, cache.startTimeText);
             
             // Configurar timer actual (grande)
-            long elapsedTimeMs = System.currentTimeMillis() - startTime;
-            String currentTime = formatTime(elapsedTimeMs);
             expandedView.setTextViewText(R.id.timer_display, currentTime);
             
-            // Configurar barra de progreso
+            // Configurar barra de progreso (objetivo de jornada de las reglas, u 8 horas)
             int elapsedMinutes = (int) (elapsedTimeMs / (1000 * 60));
-            int maxMinutes = 8 * 60; // 8 horas máximo
+            int maxMinutes = cache.progressMaxMinutes;
             int progress = Math.min(elapsedMinutes, maxMinutes);
             
             expandedView.setProgressBar(R.id.progress_bar, maxMinutes, progress, false);
-            
-            Log.d(TAG, "✅ Expanded view configured with timer: " + currentTime);
-            
         } catch (Exception e) {
-            Log.e(TAG, "❌ Error configuring expanded view", e);
+            TimerLog.e(TAG, "❌ Error configuring expanded view", e);
         }
         
         return expandedView;
@@ -414,136 +1309,180 @@ public class NativeTimerService extends Service {
 
     /**
      * ⚡ Actualización SIMPLIFICADA
+     * @return true si había cambios pero el token bucket la aplazó (hay que reprogramar)
      */
-    private void updateNotification(String title, String body) {
+    private boolean updateNotification(TimerEntry entry) {
         if (!serviceRunning) {
-            return;
+            return false;
         }
         
-        Log.d(TAG, "📝 Updating notification");
-        
+
         // Calcular tiempo transcurrido
-        long elapsed = System.currentTimeMillis() - startTime;
-        String formattedTime = formatTime(elapsed);
+        long elapsed = entry.getElapsed(clock.elapsedRealtime());
         
         // Solo actualizar si la notificación no ha sido descartada
-        if (!notificationDismissed) {
-            // Verificar que la notificación siga existiendo
-            ensureNotificationExists();
+        if (!entry.notificationDismissed) {
+            // Nada visible ha cambiado: evitar el IPC a system_server y el redibujado en SystemUI
+            long fingerprint = visibleFingerprint(entry, elapsed);
+            if (fingerprint == entry.renderedFingerprint) {
+                TimerMetrics.skippedNotifications.incrementAndGet();
+                return false;
+            }
+            if (!notifyLimiter.tryAcquire()) {
+                TimerMetrics.rateLimitedNotifications.incrementAndGet();
+                return true;
+            }
             
             // Crear notificación simple actualizada
-            Notification notification = createNotification(title, formattedTime);
+            Notification notification = createNotification(entry);
             
             // Actualizar notificación
             NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
             if (manager != null) {
-                manager.notify(NOTIFICATION_ID, notification);
+                long notifyStart = System.nanoTime();
+                Trace.beginSection(TimerMetrics.TRACE_NOTIFY);
+                try {
+                    manager.notify(entry.notificationId, notification);
+                } finally {
+                    Trace.endSection();
+                    TimerMetrics.NOTIFY.recordNanos(System.nanoTime() - notifyStart);
+                }
+                entry.renderedFingerprint = fingerprint;
+                TimerMetrics.postedNotifications.incrementAndGet();
             }
         }
-        
-        // Notificar al plugin
-        NativeTimerPlugin.notifyTimerUpdate(elapsed, formattedTime);
+        return false;
     }
 
     /**
-     * Verifica si la notificación está visible y la recrea si es necesario
+     * Huella barata de lo que muestra la notificación: texto compacto/expandido y progreso
+     * dependen solo de los minutos transcurridos; además título, color, inicio, pausas y reglas.
      */
-    private void ensureNotificationExists() {
-        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-        if (manager != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            // En versiones modernas de Android, las notificaciones ongoing no se pueden eliminar
-            // pero añadimos esta verificación por si acaso
-            boolean hasActiveNotifications = false;
-            try {
-                android.service.notification.StatusBarNotification[] notifications = manager.getActiveNotifications();
-                for (android.service.notification.StatusBarNotification notification : notifications) {
-                    if (notification.getId() == NOTIFICATION_ID) {
-                        hasActiveNotifications = true;
-                        break;
-                    }
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Error checking active notifications", e);
-            }
-            
-            if (!hasActiveNotifications && serviceRunning) {
-                Log.w(TAG, "🚫 Notification was dismissed by user");
-                
-                // 🆕 Marcar que la notificación fue descartada
-                notificationDismissed = true;
-                
-                // NO recrear automáticamente - respetar la decisión del usuario
-                Log.i(TAG, "Notification will remain dismissed until user reopens app");
-            }
+    private static long visibleFingerprint(TimerEntry entry, long elapsedMs) {
+        long fingerprint = elapsedMs / (1000 * 60);
+        fingerprint = 31 * fingerprint + entry.title.hashCode();
+        fingerprint = 31 * fingerprint + entry.primaryColor.hashCode();
+        fingerprint = 31 * fingerprint + Long.hashCode(entry.startTime);
+        fingerprint = 31 * fingerprint + entry.segmentCount;
+        if (entry.rules != null) {
+            fingerprint = 31 * fingerprint + entry.rules.getCrossed();
+            fingerprint = 31 * fingerprint + Long.hashCode(entry.rules.getProgressMaxMs());
         }
+        return fingerprint;
     }
 
     /**
-     * Convierte un color hex string a int para Android
+     * 🗑️ PendingIntent que el sistema lanza cuando el usuario descarta la notificación.
+     * Vuelve al propio servicio (acción NOTIFICATION_DISMISSED) para no tener que
+     * consultar getActiveNotifications en cada tick.
      */
-    private int parseColor(String hexColor) {
-        try {
-            // Asegurar que tiene el formato correcto
-            if (hexColor.startsWith("#")) {
-                return android.graphics.Color.parseColor(hexColor);
-            } else {
-                return android.graphics.Color.parseColor("#" + hexColor);
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Error parsing color: " + hexColor + ", using default", e);
-            return 0xFF0045a5; // Color por defecto (azul Marmoles)
+    private PendingIntent getDeleteIntent(TimerEntry entry) {
+        if (entry.deleteIntent == null) {
+            Intent dismissIntent = new Intent(this, NativeTimerService.class);
+            dismissIntent.putExtra("action", "NOTIFICATION_DISMISSED");
+            dismissIntent.putExtra("timerId", entry.id);
+            // requestCode distinto por timer: los extras no cuentan para igualar PendingIntents
+            entry.deleteIntent = PendingIntent.getService(
+                this,
+                entry.notificationId,
+                dismissIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+            );
         }
+        return entry.deleteIntent;
+    }
+
+    private void onNotificationDismissed(TimerEntry entry) {
+        TimerLog.w(TAG, "🚫 Notification dismissed by user", "id", entry.id);
+        
+        // 🆕 Marcar que la notificación fue descartada
+        entry.notificationDismissed = true;
+        TimerMetrics.dismissals.incrementAndGet();
+        
+        // NO recrear automáticamente - respetar la decisión del usuario
+        TimerLog.i(TAG, "Notification will remain dismissed until user reopens app");
     }
 
     /**
-     * Formatea el tiempo en milisegundos a "X h Y min" (formato legible)
+     * Verificación de respaldo por si el delete intent no llegó (p.ej. el proceso estaba muerto).
+     * Hace un único getActiveNotifications para todos los timers y solo se llama en
+     * transiciones de primer plano, nunca en el tick.
      */
-    private String formatTime(long timeInMillis) {
-        long totalSeconds = timeInMillis / 1000;
-        long hours = totalSeconds / 3600;
-        long minutes = (totalSeconds % 3600) / 60;
+    private void verifyNotificationsExist() {
+        NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        if (manager == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.M || !serviceRunning) {
+            return;
+        }
         
-        if (hours > 0) {
-            if (minutes > 0) {
-                return String.format("%d h %d min", hours, minutes);
-            } else {
-                return String.format("%d h", hours);
+        android.service.notification.StatusBarNotification[] notifications;
+        try {
+            notifications = manager.getActiveNotifications();
+        } catch (Exception e) {
+            TimerLog.w(TAG, "Error checking active notifications", e);
+            return;
+        }
+        
+        for (TimerEntry entry : getTimers()) {
+            if (entry.notificationDismissed) {
+                continue;
             }
-        } else {
-            if (minutes > 0) {
-                return String.format("%d min", minutes);
-            } else {
-                return "0 min";
+            boolean active = false;
+            for (android.service.notification.StatusBarNotification notification : notifications) {
+                if (notification.getId() == entry.notificationId) {
+                    active = true;
+                    break;
+                }
+            }
+            if (!active) {
+                onNotificationDismissed(entry);
             }
         }
     }
 
     /**
-     * 🆕 Formatea la fecha de inicio para mostrar en la notificación
-     * Formato: "DD de mes HH:MM"
+     * Convierte un color hex string a int para Android
      */
-    private String formatStartTime(long timestamp) {
-        try {
-            Date date = new Date(timestamp);
-            SimpleDateFormat formatter = new SimpleDateFormat("dd 'de' MMMM HH:mm", new Locale("es", "ES"));
-            return formatter.format(date);
-        } catch (Exception e) {
-            Log.e(TAG, "Error formatting start time", e);
-            // Fallback simple
-            Date date = new Date(timestamp);
-            SimpleDateFormat formatter = new SimpleDateFormat("dd/MM HH:mm", Locale.getDefault());
-            return formatter.format(date);
+    private int parseColor(String hexColor) {
+        long argb = ColorParser.parse(hexColor);
+        if (argb == ColorParser.INVALID) {
+            TimerLog.w(TAG, "Error parsing color, using default", "color", hexColor);
+            return 0xFF0045a5; // Color por defecto (azul Marmoles)
         }
+        return (int) argb;
+    }
+
+    /**
+     * 🆕 Formatea la fecha de inicio del timer con su patrón y locale
+     */
+    private String formatStartTime(TimerEntry entry) {
+        return entry.formatter.formatStartTime(entry.startTime, entry.startTimePattern, entry.localeTag);
     }
 
     @Override
     public void onDestroy() {
-        Log.d(TAG, "Service destroyed");
+        TimerLog.d(TAG, "Service destroyed");
         serviceRunning = false;
-        instance = null;
+        alive = false;
         
-        if (handler != null && updateRunnable != null) {
-            handler.removeCallbacks(updateRunnable);
+        try {
+            unregisterReceiver(screenReceiver);
+        } catch (IllegalArgumentException e) {
+            TimerLog.w(TAG, "Screen receiver was not registered", e);
+        }
+        
+        // onDestroy solo llega con stopService/stopSelf: la jornada terminó de verdad.
+        // La limpieza va al hilo del servicio, que termina al vaciar su cola.
+        handler.post(() -> {
+            scheduler.cancelAll();
+            backstop.cancel();
+            clearTimersAndRecordSessions();
+            if (journal != null) {
+                journal.clear();
+            }
+            publishState();
+        });
+        if (workerThread != null) {
+            workerThread.quitSafely();
         }
         
         super.onDestroy();
@@ -551,28 +1490,62 @@ public class NativeTimerService extends Service {
 
     @Override
     public IBinder onBind(Intent intent) {
-        return null; // No binding
+        return binder;
     }
     
     // 🆕 Métodos para controlar el estado de la app
-    public static void setAppForegroundState(boolean inForeground) {
+    void setAppForegroundState(boolean inForeground) {
         appInForeground = inForeground;
-        Log.d(TAG, "App foreground state changed: " + inForeground);
+        TimerLog.d(TAG, "App foreground state changed", "inForeground", inForeground);
         
-        // Si la app vuelve a primer plano y la notificación fue descartada, recrearla
-        if (inForeground && notificationDismissed && serviceRunning && instance != null) {
-            Log.i(TAG, "App returned to foreground, recreating dismissed notification");
-            notificationDismissed = false; // Reset del flag
-            
-            // Recrear notificación
-            long elapsed = System.currentTimeMillis() - instance.startTime;
-            String formattedTime = instance.formatTime(elapsed);
-            instance.updateNotification(instance.currentTitle, formattedTime);
-        }
+        dispatch(() -> handleAppForegroundState(inForeground));
     }
     
-    public static void resetNotificationDismissedState() {
-        notificationDismissed = false;
-        Log.d(TAG, "Notification dismissed state reset");
+    void resetNotificationDismissedState() {
+        dispatch(this::handleResetNotificationState);
+    }
+
+    private void handleAppForegroundState(boolean inForeground) {
+        updateBackstop();
+        if (!serviceRunning) {
+            return;
+        }
+        if (!inForeground) {
+            // Al pasar a segundo plano, comprobar que ninguna notificación se perdió sin avisar
+            verifyNotificationsExist();
+            return;
+        }
+        
+        // Si la app vuelve a primer plano y alguna notificación fue descartada, recrearla
+        for (TimerEntry entry : timers.values()) {
+            if (entry.notificationDismissed) {
+                TimerLog.i(TAG, "App returned to foreground, recreating dismissed notification", "id", entry.id);
+                entry.notificationDismissed = false; // Reset del flag
+                entry.renderedFingerprint = TimerEntry.NO_FINGERPRINT;
+                
+                // Recrear notificación
+                if (updateNotification(entry)) {
+                    scheduler.schedule(entry, notifyLimiter.delayUntilNext());
+                }
+            }
+        }
+    }
+
+    private void handleResetNotificationState() {
+        for (TimerEntry entry : timers.values()) {
+            entry.notificationDismissed = false;
+            entry.renderedFingerprint = TimerEntry.NO_FINGERPRINT;
+        }
+        TimerLog.d(TAG, "Notification dismissed state reset");
+    }
+
+    private static final class PendingTitle {
+        final String timerId;
+        String title; // Guardado por dispatchLock
+
+        PendingTitle(String timerId, String title) {
+            this.timerId = timerId;
+            this.title = title;
+        }
     }
 }
@@ -0,0 +1,52 @@
+package com.meycagesal.nativetimer;
+
+import androidx.core.app.NotificationCompat;
+
+/**
+ * 🎨 Recursos de render de la notificación de un timer que no cambian entre ticks.
+ *
+ * Se invalida cuando cambia el título, el color, el inicio, una pausa o un umbral superado; mientras sea
+ * válida, cada tick solo parchea el texto del tiempo y la barra de progreso.
+ */
+final class NotificationRenderCache {
+
+    NotificationCompat.Builder customBuilder;
+    NotificationCompat.Builder simpleBuilder;
+    int color;
+    String startTimeText;
+    long chronometerBase; // "when" del cronómetro, desplazado por las pausas
+    int progressMaxMinutes; // Objetivo de jornada de las reglas, u 8 horas
+    int crossedRules; // Máscara TimerRules de umbrales superados
+
+    private String boundTitle;
+    private String boundColor;
+    private long boundStartTime;
+    private int boundSegmentCount;
+    private TimerRules boundRules;
+
+    boolean isValidFor(TimerEntry entry) {
+        return boundTitle != null
+                && boundTitle.equals(entry.title)
+                && boundColor.equals(entry.primaryColor)
+                && boundStartTime == entry.startTime
+                && boundSegmentCount == entry.segmentCount
+                && boundRules == entry.rules
+                && crossedRules == (entry.rules != null ? entry.rules.getCrossed() : 0);
+    }
+
+    void bind(TimerEntry entry, int parsedColor, String startTimeText, long chronometerBase) {
+        this.customBuilder = null;
+        this.simpleBuilder = null;
+        this.color = parsedColor;
+        this.startTimeText = startTimeText;
+        this.chronometerBase = chronometerBase;
+        this.boundTitle = entry.title;
+        this.boundColor = entry.primaryColor;
+        this.boundStartTime = entry.startTime;
+        this.boundSegmentCount = entry.segmentCount;
+        this.boundRules = entry.rules;
+        this.crossedRules = entry.rules != null ? entry.rules.getCrossed() : 0;
+        long progressMaxMs = entry.rules != null ? entry.rules.getProgressMaxMs() : TimerRules.DEFAULT_PROGRESS_MAX_MS;
+        this.progressMaxMinutes = (int) Math.max(1, progressMaxMs / (60 * 1000));
+    }
+}
@@ -0,0 +1,62 @@
+package com.meycagesal.nativetimer;
+
+/**
+ * 🪣 Token bucket para los notify del servicio.
+ *
+ * Android descarta en silencio los notify de un paquete por encima de unos 5 por segundo.
+ * El bucket se queda algo por debajo (deja margen a las notificaciones propias de la app):
+ * una ráfaga de {@link #BURST} y después uno cada {@link #INTERVAL_MS}. Un notify sin token
+ * no se pierde, se aplaza; como el render lee siempre el estado actual, el reintento
+ * publica directamente el último. Solo lo usa el hilo del servicio.
+ */
+final class NotifyRateLimiter {
+
+    static final int BURST = 4;
+    static final long INTERVAL_MS = 250;
+    private static final long CAPACITY_MS = BURST * INTERVAL_MS;
+
+    private final TimerClock clock;
+    // Crédito acumulado en ms: cada notify cuesta INTERVAL_MS
+    private long budgetMs = CAPACITY_MS;
+    private long refilledAt;
+
+    NotifyRateLimiter(TimerClock clock) {
+        this.clock = clock;
+        this.refilledAt = clock.elapsedRealtime();
+    }
+
+    /**
+     * Consume un token si lo hay. @return false si el notify debe aplazarse
+     */
+    boolean tryAcquire() {
+        refill();
+        if (budgetMs < INTERVAL_MS) {
+            return false;
+        }
+        budgetMs -= INTERVAL_MS;
+        return true;
+    }
+
+    /**
+     * Para notify que no se pueden aplazar (startForeground, resumen del grupo):
+     * cuentan igual para el límite de Android, así que retrasan los siguientes
+     */
+    void consume() {
+        refill();
+        budgetMs = Math.max(budgetMs - INTERVAL_MS, -CAPACITY_MS);
+    }
+
+    /**
+     * ms hasta que haya un token disponible (0 si ya lo hay)
+     */
+    long delayUntilNext() {
+        refill();
+        return Math.max(0, INTERVAL_MS - budgetMs);
+    }
+
+    private void refill() {
+        long now = clock.elapsedRealtime();
+        budgetMs = Math.min(CAPACITY_MS, budgetMs + (now - refilledAt));
+        refilledAt = now;
+    }
+}
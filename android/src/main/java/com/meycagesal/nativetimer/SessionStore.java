@@ -0,0 +1,464 @@
+package com.meycagesal.nativetimer;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * 🗂️ Histórico local de sesiones terminadas.
+ *
+ * Cada sesión se añade al final de un fichero de registros binarios de ancho fijo
+ * ({@link #RECORD_SIZE} bytes). En memoria se mantienen los agregados por día local
+ * como arrays ordenados con sumas prefijas, de modo que cualquier rango de días
+ * (hoy, esta semana, un mes) se responde con dos búsquedas binarias.
+ * El tiempo activo de una sesión se imputa al día en que empezó.
+ */
+final class SessionStore {
+
+    private static final String TAG = "SessionStore";
+    private static final String SESSIONS_FILE = "native_timer_sessions_v2.bin";
+    // Formato anterior: id de 20 bytes sin longitud, cortado sin respetar los caracteres
+    private static final String LEGACY_SESSIONS_FILE = "native_timer_sessions.bin";
+    private static final int LEGACY_ID_BYTES = 20;
+    private static final int LEGACY_RECORD_SIZE = 8 + 8 + 8 + 4 + LEGACY_ID_BYTES;
+
+    static final int MAX_ID_BYTES = 63;
+    // startTime, endTime, activeMs (long) + pauseCount (int) + longitud (byte) e id UTF-8 con relleno
+    static final int RECORD_SIZE = 8 + 8 + 8 + 4 + 1 + MAX_ID_BYTES;
+
+    static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static SessionStore instance;
+
+    private final File file;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private FileOutputStream out;
+    private long length = 0; // Bytes de registros completos: lo que export puede leer sin el lock
+
+    // Agregados por día local: days ordenado, prefijos con un elemento extra (prefix[0] = 0)
+    private int[] days = new int[16];
+    private long[] activePrefix = new long[17];
+    private int[] countPrefix = new int[17];
+    private int dayCount = 0;
+    private int sessionCount = 0;
+
+    static synchronized SessionStore getInstance(Context context) {
+        if (instance == null) {
+            File dir = context.getApplicationContext().getFilesDir();
+            instance = open(new File(dir, SESSIONS_FILE), new File(dir, LEGACY_SESSIONS_FILE));
+        }
+        return instance;
+    }
+
+    /**
+     * Abre el histórico de file, migrando antes el del formato anterior si lo hay
+     */
+    static SessionStore open(File file, File legacyFile) {
+        if (legacyFile.exists() && !file.exists()) {
+            migrateLegacy(legacyFile, file);
+        }
+        SessionStore store = new SessionStore(file);
+        store.load();
+        return store;
+    }
+
+    private SessionStore(File file) {
+        this.file = file;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    synchronized int getSessionCount() {
+        return sessionCount;
+    }
+
+    /**
+     * Guarda una sesión terminada y actualiza los agregados del día
+     */
+    synchronized void record(String timerId, long startTime, long endTime, long activeMs, int pauseCount) {
+        byte[] id = timerId.getBytes(StandardCharsets.UTF_8);
+        encodeRecord(record, startTime, endTime, activeMs, pauseCount, id, id.length);
+
+        try {
+            if (out == null) {
+                out = new FileOutputStream(file, true);
+            }
+            out.write(record.array(), 0, RECORD_SIZE);
+            out.getFD().sync();
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error appending session record", e);
+            // Un append a medias desalinearía los siguientes registros
+            truncate(length);
+            return;
+        }
+        length += RECORD_SIZE;
+
+        addToDay(localDay(startTime), activeMs);
+        TimerLog.d(TAG, "Session stored", "id", timerId, "activeMs", activeMs);
+    }
+
+    /**
+     * Tiempo activo de los días locales [fromDay, toDay], ambos incluidos. O(log n)
+     */
+    synchronized long getActiveTime(int fromDay, int toDay) {
+        int from = lowerBound(fromDay);
+        int to = lowerBound(toDay + 1);
+        return from < to ? activePrefix[to] - activePrefix[from] : 0;
+    }
+
+    /**
+     * Nº de sesiones de los días locales [fromDay, toDay], ambos incluidos. O(log n)
+     */
+    synchronized int getSessionCount(int fromDay, int toDay) {
+        int from = lowerBound(fromDay);
+        int to = lowerBound(toDay + 1);
+        return from < to ? countPrefix[to] - countPrefix[from] : 0;
+    }
+
+    /**
+     * 📤 Vuelca en target las sesiones cuyo día local de inicio está en [fromDay, toDay].
+     * Lee y escribe por bloques con FileChannel: la memoria usada no depende del tamaño
+     * del histórico. Solo toma el lock para fijar la longitud: el fichero es de solo
+     * append, así que los registros hasta ahí no cambian y record() no espera al volcado.
+     * @return nº de filas exportadas
+     */
+    int export(File target, boolean ndjson, int fromDay, int toDay) throws IOException {
+        long usable;
+        synchronized (this) {
+            usable = length;
+        }
+        ByteBuffer in = ByteBuffer.allocateDirect(RECORD_SIZE * 256);
+        ByteBuffer outBytes = ByteBuffer.allocateDirect(32 * 1024);
+        StringBuilder text = new StringBuilder(256);
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        byte[] idBytes = new byte[MAX_ID_BYTES];
+        int rows = 0;
+
+        // Canales desde streams: FileChannel.open(Path) requiere API 26 y minSdk es 24
+        try (FileOutputStream targetStream = new FileOutputStream(target);
+             FileChannel output = targetStream.getChannel()) {
+            if (!ndjson) {
+                text.append("id,startTime,endTime,activeTime,pauseCount\n");
+                writeText(text, encoder, outBytes, output);
+            }
+            if (file.exists()) {
+                try (FileInputStream sourceStream = new FileInputStream(file);
+                     FileChannel input = sourceStream.getChannel()) {
+                    long position = 0;
+                    while (position < usable) {
+                        in.clear();
+                        in.limit((int) Math.min(in.capacity(), usable - position));
+                        while (in.hasRemaining()) {
+                            if (input.read(in, position + in.position()) < 0) break;
+                        }
+                        in.flip();
+                        position += in.limit();
+                        while (in.remaining() >= RECORD_SIZE) {
+                            long startTime = in.getLong();
+                            long endTime = in.getLong();
+                            long activeMs = in.getLong();
+                            int pauseCount = in.getInt();
+                            int idLength = in.get() & 0xff;
+                            in.get(idBytes);
+                            int day = localDay(startTime);
+                            if (day < fromDay || day > toDay) {
+                                continue;
+                            }
+                            appendRow(text, ndjson, new String(idBytes, 0, Math.min(idLength, MAX_ID_BYTES), StandardCharsets.UTF_8), startTime, endTime, activeMs, pauseCount);
+                            rows++;
+                            if (text.length() >= 4096) {
+                                writeText(text, encoder, outBytes, output);
+                            }
+                        }
+                    }
+                }
+            }
+            writeText(text, encoder, outBytes, output);
+            output.force(false);
+        }
+        TimerLog.d(TAG, "Sessions exported", "file", target.getName(), "rows", rows);
+        return rows;
+    }
+
+    /**
+     * Escribe un registro en buffer. El id se corta a {@link #MAX_ID_BYTES} sin partir un
+     * carácter UTF-8 (un corte a mitad se decodificaría como U+FFFD)
+     */
+    private static void encodeRecord(ByteBuffer buffer, long startTime, long endTime, long activeMs,
+                                     int pauseCount, byte[] id, int idLength) {
+        idLength = completeUtf8Length(id, Math.min(idLength, MAX_ID_BYTES));
+        buffer.clear();
+        buffer.putLong(startTime);
+        buffer.putLong(endTime);
+        buffer.putLong(activeMs);
+        buffer.putInt(pauseCount);
+        buffer.put((byte) idLength);
+        buffer.put(id, 0, idLength);
+        for (int i = idLength; i < MAX_ID_BYTES; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Longitud de los primeros length bytes sin la secuencia UTF-8 incompleta del final, si la hay
+     */
+    static int completeUtf8Length(byte[] bytes, int length) {
+        int lead = length - 1;
+        while (lead >= 0 && (bytes[lead] & 0xc0) == 0x80) {
+            lead--;
+        }
+        if (lead < 0) {
+            return 0;
+        }
+        int b = bytes[lead] & 0xff;
+        int sequence = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : b >= 0xc0 ? 2 : 1;
+        return length - lead >= sequence ? length : lead;
+    }
+
+    private static void appendRow(StringBuilder text, boolean ndjson, String id,
+                                  long startTime, long endTime, long activeMs, int pauseCount) {
+        if (ndjson) {
+            text.append("{\"id\":\"");
+            for (int i = 0; i < id.length(); i++) {
+                char c = id.charAt(i);
+                if (c == '"' || c == '\\') {
+                    text.append('\\').append(c);
+                } else if (c < 0x20) {
+                    text.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+                } else {
+                    text.append(c);
+                }
+            }
+            text.append("\",\"startTime\":").append(startTime)
+                    .append(",\"endTime\":").append(endTime)
+                    .append(",\"activeTime\":").append(activeMs)
+                    .append(",\"pauseCount\":").append(pauseCount)
+                    .append("}\n");
+        } else {
+            if (id.indexOf(',') >= 0 || id.indexOf('"') >= 0 || id.indexOf('\n') >= 0) {
+                text.append('"').append(id.replace("\"", "\"\"")).append('"');
+            } else {
+                text.append(id);
+            }
+            text.append(',').append(startTime)
+                    .append(',').append(endTime)
+                    .append(',').append(activeMs)
+                    .append(',').append(pauseCount)
+                    .append('\n');
+        }
+    }
+
+    /**
+     * Codifica el texto acumulado a UTF-8 en el buffer de salida y lo vacía en el canal
+     */
+    private static void writeText(StringBuilder text, CharsetEncoder encoder, ByteBuffer outBytes,
+                                  FileChannel output) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, outBytes, true);
+            if (result.isOverflow()) {
+                drain(outBytes, output);
+                continue;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            break;
+        }
+        while (encoder.flush(outBytes).isOverflow()) {
+            drain(outBytes, output);
+        }
+        drain(outBytes, output);
+        text.setLength(0);
+    }
+
+    private static void drain(ByteBuffer outBytes, FileChannel output) throws IOException {
+        outBytes.flip();
+        while (outBytes.hasRemaining()) {
+            output.write(outBytes);
+        }
+        outBytes.clear();
+    }
+
+    /**
+     * Día local (días desde epoch en la zona horaria actual) de un instante de reloj de pared
+     */
+    static int localDay(long wallTime) {
+        return (int) Math.floorDiv(wallTime + TimeZone.getDefault().getOffset(wallTime), DAY_MS);
+    }
+
+    private void truncate(long validLength) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                TimerLog.w(TAG, "Error closing session history", e);
+            }
+            out = null;
+        }
+        try (FileOutputStream stream = new FileOutputStream(file, true);
+             FileChannel channel = stream.getChannel()) {
+            channel.truncate(validLength);
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error truncating session history", e);
+        }
+    }
+
+    /**
+     * 🔄 Convierte el fichero del formato anterior (id de 20 bytes) al actual y lo borra.
+     * Los ids ya truncados se conservan sin el carácter cortado que pudieran llevar al final.
+     */
+    private static void migrateLegacy(File legacyFile, File file) {
+        File tmp = new File(file.getPath() + ".tmp");
+        byte[] legacy = new byte[LEGACY_RECORD_SIZE];
+        ByteBuffer legacyBuffer = ByteBuffer.wrap(legacy);
+        ByteBuffer converted = ByteBuffer.allocate(RECORD_SIZE);
+        byte[] id = new byte[LEGACY_ID_BYTES];
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(legacyFile)));
+             FileOutputStream tmpOut = new FileOutputStream(tmp)) {
+            BufferedOutputStream buffered = new BufferedOutputStream(tmpOut);
+            while (true) {
+                try {
+                    in.readFully(legacy);
+                } catch (EOFException e) {
+                    break; // Fin del fichero, o registro truncado que se descarta
+                }
+                int idLength = 0;
+                while (idLength < LEGACY_ID_BYTES && legacy[28 + idLength] != 0) {
+                    id[idLength] = legacy[28 + idLength];
+                    idLength++;
+                }
+                encodeRecord(converted, legacyBuffer.getLong(0), legacyBuffer.getLong(8), legacyBuffer.getLong(16),
+                        legacyBuffer.getInt(24), id, idLength);
+                buffered.write(converted.array(), 0, RECORD_SIZE);
+                records++;
+            }
+            buffered.flush();
+            tmpOut.getFD().sync();
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error migrating session history, keeping the old file", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            TimerLog.w(TAG, "Could not replace session history after migration");
+            tmp.delete();
+            return;
+        }
+        if (!legacyFile.delete()) {
+            TimerLog.w(TAG, "Could not delete old session history");
+        }
+        TimerLog.i(TAG, "Session history migrated", "sessions", records);
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        long fileLength = file.length();
+        long usable = fileLength - (fileLength % RECORD_SIZE);
+        if (usable != fileLength) {
+            TimerLog.w(TAG, "Ignoring truncated session record", "usableBytes", usable, "fileBytes", fileLength);
+        }
+        length = usable;
+        if (usable != fileLength) {
+            // Sin cortar la cola, el siguiente append quedaría desalineado
+            truncate(usable);
+        }
+
+        byte[] chunk = new byte[RECORD_SIZE * 256];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long remaining = usable;
+        try (FileInputStream in = new FileInputStream(file)) {
+            while (remaining > 0) {
+                int want = (int) Math.min(chunk.length, remaining);
+                int read = 0;
+                while (read < want) {
+                    int n = in.read(chunk, read, want - read);
+                    if (n < 0) break;
+                    read += n;
+                }
+                if (read < want) break;
+                for (int offset = 0; offset < read; offset += RECORD_SIZE) {
+                    long startTime = buffer.getLong(offset);
+                    long activeMs = buffer.getLong(offset + 16);
+                    addToDay(localDay(startTime), activeMs);
+                }
+                remaining -= read;
+            }
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error loading session history", e);
+        }
+        TimerLog.d(TAG, "Session history loaded", "sessions", sessionCount, "days", dayCount);
+    }
+
+    /**
+     * Lo habitual es que el día sea el último o uno nuevo al final: O(1).
+     * Una sesión de un día anterior (p.ej. timer restaurado) desplaza y rehace los prefijos.
+     */
+    private void addToDay(int day, long activeMs) {
+        sessionCount++;
+        int index = lowerBound(day);
+        if (index == dayCount || days[index] != day) {
+            ensureCapacity(dayCount + 1);
+            System.arraycopy(days, index, days, index + 1, dayCount - index);
+            System.arraycopy(activePrefix, index + 1, activePrefix, index + 2, dayCount - index);
+            System.arraycopy(countPrefix, index + 1, countPrefix, index + 2, dayCount - index);
+            days[index] = day;
+            activePrefix[index + 1] = activePrefix[index];
+            countPrefix[index + 1] = countPrefix[index];
+            dayCount++;
+        }
+        for (int i = index + 1; i <= dayCount; i++) {
+            activePrefix[i] += activeMs;
+            countPrefix[i]++;
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= days.length) {
+            return;
+        }
+        int capacity = days.length * 2;
+        days = Arrays.copyOf(days, capacity);
+        activePrefix = Arrays.copyOf(activePrefix, capacity + 1);
+        countPrefix = Arrays.copyOf(countPrefix, capacity + 1);
+    }
+
+    /**
+     * Primer índice con days[i] >= day
+     */
+    private int lowerBound(int day) {
+        int low = 0;
+        int high = dayCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,29 @@
+package com.meycagesal.nativetimer;
+
+import android.os.Handler;
+
+/**
+ * ⏲️ Lo único que {@link TimerScheduler} necesita de un Handler: programar su Runnable en
+ * un instante de {@link TimerClock#uptime} y cancelarlo. Un test puede sustituirlo por una
+ * cola simulada que ejecuta los ticks al avanzar el reloj virtual.
+ */
+interface TickScheduler {
+
+    void postAtTime(Runnable runnable, long uptime);
+
+    void remove(Runnable runnable);
+
+    static TickScheduler forHandler(Handler handler) {
+        return new TickScheduler() {
+            @Override
+            public void postAtTime(Runnable runnable, long uptime) {
+                handler.postAtTime(runnable, uptime);
+            }
+
+            @Override
+            public void remove(Runnable runnable) {
+                handler.removeCallbacks(runnable);
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package com.meycagesal.nativetimer;
+
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * 🕐 Formateo de tiempos sin asignaciones en régimen estable.
+ *
+ * El tiempo transcurrido solo cambia de texto una vez por minuto, así que se cachea el
+ * último resultado y se compone en un StringBuilder reutilizado cuando cambia. El
+ * SimpleDateFormat de la fecha de inicio se crea una vez por patrón y locale.
+ * No es thread-safe: cada timer tiene su instancia, usada solo desde el hilo del servicio.
+ */
+final class TimeFormatter {
+
+    private static final String TAG = "TimeFormatter";
+
+    static final String DEFAULT_START_PATTERN = "dd 'de' MMMM HH:mm";
+    static final String DEFAULT_LOCALE_TAG = "es-ES";
+    private static final String FALLBACK_START_PATTERN = "dd/MM HH:mm";
+
+    private final StringBuilder buffer = new StringBuilder(16);
+    private long cachedMinutes = Long.MIN_VALUE;
+    private String cachedElapsed;
+
+    private final Date date = new Date(0);
+    private SimpleDateFormat startFormat;
+    private String startPattern;
+    private String startLocaleTag;
+
+    /**
+     * Formatea el tiempo en milisegundos a "X h Y min" (mismo texto que el antiguo String.format)
+     */
+    String formatElapsed(long timeInMillis) {
+        long totalSeconds = timeInMillis / 1000;
+        long totalMinutes = totalSeconds / 60;
+        if (totalMinutes == cachedMinutes) {
+            return cachedElapsed;
+        }
+
+        long hours = totalSeconds / 3600;
+        long minutes = (totalSeconds % 3600) / 60;
+
+        String formatted;
+        if (hours > 0) {
+            buffer.setLength(0);
+            buffer.append(hours).append(" h");
+            if (minutes > 0) {
+                buffer.append(' ').append(minutes).append(" min");
+            }
+            formatted = buffer.toString();
+        } else if (minutes > 0) {
+            buffer.setLength(0);
+            buffer.append(minutes).append(" min");
+            formatted = buffer.toString();
+        } else {
+            formatted = "0 min";
+        }
+
+        cachedMinutes = totalMinutes;
+        cachedElapsed = formatted;
+        return formatted;
+    }
+
+    /**
+     * 🆕 Formatea la fecha de inicio para mostrar en la notificación
+     * Formato por defecto: "DD de mes HH:MM" en español
+     */
+    String formatStartTime(long timestamp, String pattern, String localeTag) {
+        if (pattern == null) pattern = DEFAULT_START_PATTERN;
+        if (localeTag == null) localeTag = DEFAULT_LOCALE_TAG;
+
+        date.setTime(timestamp);
+        try {
+            if (startFormat == null || !pattern.equals(startPattern) || !localeTag.equals(startLocaleTag)) {
+                startFormat = new SimpleDateFormat(pattern, Locale.forLanguageTag(localeTag));
+                startPattern = pattern;
+                startLocaleTag = localeTag;
+            }
+            return startFormat.format(date);
+        } catch (Exception e) {
+            TimerLog.e(TAG, "Error formatting start time", "pattern", pattern, e);
+            // Fallback simple
+            startFormat = null;
+            return new SimpleDateFormat(FALLBACK_START_PATTERN, Locale.getDefault()).format(date);
+        }
+    }
+}
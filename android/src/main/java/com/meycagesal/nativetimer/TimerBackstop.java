@@ -0,0 +1,83 @@
+package com.meycagesal.nativetimer;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+/**
+ * ⏰ Alarma de respaldo para los ticks del Handler.
+ *
+ * postDelayed usa uptimeMillis, que se detiene en Doze, y desaparece si el fabricante mata
+ * el proceso. Mientras el proceso probablemente pueda congelarse (app en segundo plano o
+ * pantalla apagada) se mantiene armada una única alarma ELAPSED_REALTIME_WAKEUP un poco
+ * después del próximo cambio visible. Si el Handler llega a tiempo la reprograma antes de
+ * que suene, así que solo despierta al dispositivo cuando el Handler se quedó atrás; al
+ * sonar arranca el servicio, que se reconstruye desde el journal si hacía falta.
+ * En API 26+ lo arranca como foreground service: con la app en segundo plano un startService
+ * normal lanza IllegalStateException, y el servicio llama a startForeground nada más arrancar.
+ */
+final class TimerBackstop {
+
+    private static final String TAG = "TimerBackstop";
+    static final String ACTION = "BACKSTOP_TICK";
+    private static final int REQUEST_CODE = 0; // Los slots de notificación empiezan en 1000
+    private static final long GRACE_MS = 60 * 1000; // Margen para que el tick del Handler gane
+    private static final long REARM_TOLERANCE_MS = 1000; // Evita IPC a AlarmManager si no cambia
+
+    private final AlarmManager alarmManager;
+    private final PendingIntent pendingIntent;
+    private long armedAt; // elapsedRealtime de disparo
+    private boolean armed = true; // Puede quedar una alarma de un proceso anterior
+
+    TimerBackstop(Context context) {
+        alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        Intent intent = new Intent(context, NativeTimerService.class);
+        intent.putExtra("action", ACTION);
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE;
+        pendingIntent = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+            ? PendingIntent.getForegroundService(context, REQUEST_CODE, intent, flags)
+            : PendingIntent.getService(context, REQUEST_CODE, intent, flags);
+    }
+
+    /**
+     * Arma (o mueve) la alarma para después del cambio visible en boundaryRealtime
+     */
+    void arm(long boundaryRealtime) {
+        long triggerAt = boundaryRealtime + GRACE_MS;
+        if (alarmManager == null || (armed && Math.abs(triggerAt - armedAt) < REARM_TOLERANCE_MS)) {
+            return;
+        }
+        try {
+            // Exacta si la app tiene el permiso; si no, inexacta (también vale en Doze)
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAt, pendingIntent);
+            } else {
+                alarmManager.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAt, pendingIntent);
+            }
+            armedAt = triggerAt;
+            armed = true;
+            TimerLog.d(TAG, "Backstop armed", "triggerAt", triggerAt);
+        } catch (RuntimeException e) {
+            // SecurityException si se revocó el permiso de alarmas exactas entre la comprobación y el set
+            TimerLog.w(TAG, "Error arming backstop alarm", e);
+        }
+    }
+
+    void cancel() {
+        if (alarmManager == null || !armed) {
+            return;
+        }
+        alarmManager.cancel(pendingIntent);
+        armed = false;
+        TimerLog.d(TAG, "Backstop cancelled");
+    }
+
+    /**
+     * La alarma ya sonó: la siguiente llamada a arm siempre la vuelve a programar
+     */
+    void onFired() {
+        armed = false;
+    }
+}
@@ -0,0 +1,43 @@
+package com.meycagesal.nativetimer;
+
+import android.os.SystemClock;
+
+/**
+ * 🕰️ Relojes que usa el servicio. En producción son los del sistema; un test puede
+ * inyectar uno virtual con {@link NativeTimerService#setClock} y avanzar una jornada
+ * entera en milisegundos.
+ */
+interface TimerClock {
+
+    TimerClock SYSTEM = new TimerClock() {
+        @Override
+        public long wallTime() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public long uptime() {
+            return SystemClock.uptimeMillis();
+        }
+    };
+
+    /**
+     * Reloj de pared (epoch ms): solo para mostrar y para anclar
+     */
+    long wallTime();
+
+    /**
+     * Reloj monótono que sigue contando en deep sleep: base de todo el tiempo transcurrido
+     */
+    long elapsedRealtime();
+
+    /**
+     * Reloj del Handler (se detiene en deep sleep): base de la planificación de ticks
+     */
+    long uptime();
+}
@@ -0,0 +1,45 @@
+package com.meycagesal.nativetimer;
+
+/**
+ * Un cambio de estado dentro de un lote de applyCommands.
+ * El lote entero se ejecuta en una sola pasada del hilo del servicio, sin ticks intercalados.
+ */
+final class TimerCommand {
+
+    static final int START = 1;
+    static final int STOP = 2;
+    static final int PAUSE = 3;
+    static final int RESUME = 4;
+    static final int UPDATE_TITLE = 5;
+    static final int SET_FOREGROUND = 6;
+    static final int RESET_NOTIFICATION_STATE = 7;
+
+    final int type;
+    String timerId; // null = timer por defecto (o todos, en STOP)
+    String title;
+    boolean inForeground;
+    TimerStartRequest startRequest;
+
+    TimerCommand(int type) {
+        this.type = type;
+    }
+
+    /**
+     * Tipo de comando a partir del nombre que usa JS. @return 0 si no se reconoce
+     */
+    static int parseType(String name) {
+        if (name == null) {
+            return 0;
+        }
+        switch (name) {
+            case "start": return START;
+            case "stop": return STOP;
+            case "pause": return PAUSE;
+            case "resume": return RESUME;
+            case "updateTitle": return UPDATE_TITLE;
+            case "setForeground": return SET_FOREGROUND;
+            case "resetNotificationState": return RESET_NOTIFICATION_STATE;
+            default: return 0;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.meycagesal.nativetimer;
+
+import android.app.PendingIntent;
+
+/**
+ * Estado de un timer individual gestionado por {@link NativeTimerService}.
+ * Cada timer tiene su propio slot de notificación.
+ */
+final class TimerEntry {
+
+    static final long NO_FINGERPRINT = Long.MIN_VALUE;
+
+    final String id;
+    final int notificationId;
+
+    long startTime; // Inicio en reloj de pared, tal como lo envía JS
+    long anchorRealtime; // SystemClock.elapsedRealtime() equivalente a startTime
+    int anchorBootCount = -1; // Arranque del dispositivo en el que se fijó el ancla
+    
+    // ⏸️ Segmentos de actividad como pares [inicio, fin] en elapsedRealtime; si el número
+    // de valores es impar el último segmento sigue abierto (timer corriendo)
+    long[] segments = new long[4];
+    int segmentCount = 0;
+    long closedTotal = 0; // Suma de los segmentos cerrados: mantiene getElapsed en O(1)
+    String startTimeFormatted;
+    // Escritos en el hilo del servicio y leídos desde el plugin
+    volatile String title = "Timer activo";
+    volatile String body = "00:00:00";
+    volatile String primaryColor = "#0045a5"; // Color por defecto
+    String localeTag = TimeFormatter.DEFAULT_LOCALE_TAG;
+    String startTimePattern = TimeFormatter.DEFAULT_START_PATTERN;
+    final TimeFormatter formatter = new TimeFormatter();
+    TimerRules rules; // Umbrales de jornada (null = sin reglas)
+    volatile boolean notificationDismissed = false; // Track si usuario descartó esta notificación
+    final NotificationRenderCache renderCache = new NotificationRenderCache();
+    long renderedFingerprint = NO_FINGERPRINT; // Huella de lo último enviado a NotificationManager
+    PendingIntent deleteIntent; // Creado una vez por timer
+
+    // Gestionado por TimerScheduler
+    long nextDueAt;
+    int heapIndex = -1;
+
+    TimerEntry(String id, int notificationId) {
+        this.id = id;
+        this.notificationId = notificationId;
+    }
+
+    /**
+     * Ancla el inicio de pared al reloj monótono. Solo en eventos explícitos
+     * (inicio del timer o restauración tras reinicio del dispositivo).
+     */
+    void anchor(long wallNow, long realtimeNow, int bootCount) {
+        rebase(realtimeNow - (wallNow - startTime), bootCount);
+    }
+
+    /**
+     * Fija un ancla nueva desplazando los segmentos existentes a la nueva base de tiempo
+     */
+    synchronized void rebase(long newAnchorRealtime, int bootCount) {
+        if (segmentCount == 0) {
+            segments[0] = newAnchorRealtime;
+            segmentCount = 1;
+        } else {
+            long delta = newAnchorRealtime - anchorRealtime;
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] += delta;
+            }
+        }
+        anchorRealtime = newAnchorRealtime;
+        anchorBootCount = bootCount;
+    }
+
+    /**
+     * 🔁 Sin BOOT_COUNT: el ancla sigue valiendo si el instante de arranque que implica
+     * (pared - elapsedRealtime) coincide con el de ahora dentro de la tolerancia. Tras un
+     * reinicio elapsedRealtime vuelve a 0 y ese instante salta, como mínimo, lo que duró el
+     * arranque anterior; un límite de segmento en el futuro también delata el reinicio.
+     */
+    synchronized boolean isAnchoredInThisBoot(long wallNow, long realtimeNow, long toleranceMs) {
+        if (segmentCount > 0 && segments[segmentCount - 1] > realtimeNow) {
+            return false;
+        }
+        long anchoredBootWall = startTime - anchorRealtime;
+        return Math.abs((wallNow - realtimeNow) - anchoredBootWall) <= toleranceMs;
+    }
+
+    synchronized boolean isPaused() {
+        return segmentCount > 0 && (segmentCount & 1) == 0;
+    }
+
+    /**
+     * Cierra el segmento abierto. @return false si ya estaba en pausa
+     */
+    synchronized boolean pause(long realtimeNow) {
+        if (segmentCount == 0 || isPaused()) {
+            return false;
+        }
+        closedTotal += realtimeNow - segments[segmentCount - 1];
+        appendSegmentBound(realtimeNow);
+        return true;
+    }
+
+    /**
+     * Abre un segmento nuevo. @return false si no estaba en pausa
+     */
+    synchronized boolean resume(long realtimeNow) {
+        if (!isPaused()) {
+            return false;
+        }
+        appendSegmentBound(realtimeNow);
+        return true;
+    }
+
+    private void appendSegmentBound(long realtime) {
+        if (segmentCount == segments.length) {
+            long[] grown = new long[segments.length * 2];
+            System.arraycopy(segments, 0, grown, 0, segmentCount);
+            segments = grown;
+        }
+        segments[segmentCount++] = realtime;
+    }
+
+    /**
+     * Tiempo transcurrido monótono sin contar pausas: inmune a cambios del reloj del
+     * usuario o NTP y constante en coste sin importar cuántas pausas haya.
+     * Los segmentos se mutan en el hilo del servicio y se leen desde el del plugin:
+     * el monitor de la entrada (sin contención en la práctica) publica los cambios.
+     */
+    synchronized long getElapsed(long realtimeNow) {
+        if (segmentCount == 0) {
+            return realtimeNow - anchorRealtime;
+        }
+        return isPaused() ? closedTotal : closedTotal + realtimeNow - segments[segmentCount - 1];
+    }
+
+    /**
+     * Copia de los límites de segmento (pares [inicio, fin] en elapsedRealtime), tomada
+     * bajo el monitor para que sea coherente con getElapsed
+     */
+    synchronized long[] copySegments() {
+        long[] copy = new long[segmentCount];
+        System.arraycopy(segments, 0, copy, 0, segmentCount);
+        return copy;
+    }
+
+    /**
+     * Desfase detectado del reloj de pared desde el anclaje (positivo = el reloj se adelantó)
+     */
+    synchronized long getWallClockSkew(long wallNow, long realtimeNow) {
+        return (wallNow - startTime) - (realtimeNow - anchorRealtime);
+    }
+}
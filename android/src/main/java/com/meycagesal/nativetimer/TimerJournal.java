@@ -0,0 +1,382 @@
+package com.meycagesal.nativetimer;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 📒 Journal append-only del estado de los timers.
+ *
+ * Cada evento (start/ancla/formato/pausa/reanudación/stop/título/color/reglas) se añade como un registro binario y se hace fsync,
+ * de modo que si Android mata el proceso y reinicia el servicio (START_STICKY) el estado
+ * se reconstruye en onCreate sin esperar a que JS vuelva a llamar a startTimer.
+ * Al superar {@link #COMPACT_THRESHOLD} registros (o el doble de lo que dejó la última
+ * compactación, si es mayor) se reescribe con solo el estado vivo.
+ */
+final class TimerJournal {
+
+    private static final String TAG = "TimerJournal";
+    private static final int COMPACT_THRESHOLD = 64;
+
+    private static final byte RECORD_START = 1;
+    private static final byte RECORD_STOP = 2;
+    private static final byte RECORD_TITLE = 3;
+    private static final byte RECORD_COLOR = 4;
+    private static final byte RECORD_ANCHOR = 5;
+    private static final byte RECORD_FORMAT = 6;
+    private static final byte RECORD_PAUSE = 7;
+    private static final byte RECORD_RESUME = 8;
+    private static final byte RECORD_RULES = 9;
+
+    private final File file;
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBuffer);
+    private FileOutputStream out;
+    private int recordCount = 0;
+    private int compactedCount = 0; // Registros tras la última compactación
+
+    TimerJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reconstruye los timers activos a partir del journal.
+     * Un registro truncado al final (crash a mitad de escritura) se descarta.
+     */
+    Map<String, TimerEntry> replay() {
+        Map<String, TimerEntry> timers = new LinkedHashMap<>();
+        if (!file.exists() || file.length() == 0) {
+            return timers;
+        }
+
+        byte[] data;
+        try (FileInputStream in = new FileInputStream(file)) {
+            data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error reading journal, starting empty", e);
+            return timers;
+        }
+
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        int validLength = 0;
+        int records = 0;
+        try {
+            while (bytes.available() > 0) {
+                byte type = in.readByte();
+                String id = in.readUTF();
+                switch (type) {
+                    case RECORD_START: {
+                        TimerEntry entry = new TimerEntry(id, in.readInt());
+                        entry.startTime = in.readLong();
+                        entry.title = in.readUTF();
+                        entry.body = in.readUTF();
+                        entry.primaryColor = in.readUTF();
+                        timers.put(id, entry);
+                        break;
+                    }
+                    case RECORD_STOP:
+                        timers.remove(id);
+                        break;
+                    case RECORD_TITLE: {
+                        String title = in.readUTF();
+                        TimerEntry entry = timers.get(id);
+                        if (entry != null) entry.title = title;
+                        break;
+                    }
+                    case RECORD_COLOR: {
+                        String color = in.readUTF();
+                        TimerEntry entry = timers.get(id);
+                        if (entry != null) entry.primaryColor = color;
+                        break;
+                    }
+                    case RECORD_ANCHOR: {
+                        long anchorRealtime = in.readLong();
+                        int bootCount = in.readInt();
+                        TimerEntry entry = timers.get(id);
+                        if (entry != null) {
+                            entry.rebase(anchorRealtime, bootCount);
+                        }
+                        break;
+                    }
+                    case RECORD_FORMAT: {
+                        String localeTag = in.readUTF();
+                        String pattern = in.readUTF();
+                        TimerEntry entry = timers.get(id);
+                        if (entry != null) {
+                            entry.localeTag = localeTag;
+                            entry.startTimePattern = pattern;
+                        }
+                        break;
+                    }
+                    case RECORD_PAUSE: {
+                        long realtime = in.readLong();
+                        TimerEntry entry = timers.get(id);
+                        if (entry != null) entry.pause(realtime);
+                        break;
+                    }
+                    case RECORD_RESUME: {
+                        long realtime = in.readLong();
+                        TimerEntry entry = timers.get(id);
+                        if (entry != null) entry.resume(realtime);
+                        break;
+                    }
+                    case RECORD_RULES: {
+                        TimerRules rules = TimerRules.of(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+                        TimerEntry entry = timers.get(id);
+                        if (entry != null) entry.rules = rules;
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+                validLength = data.length - bytes.available();
+                records++;
+            }
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Journal tail corrupt, truncating", "validBytes", validLength, "fileBytes", data.length, e);
+            truncate(validLength);
+        }
+
+        recordCount = records;
+        return timers;
+    }
+
+    /**
+     * START + ANCLA + FORMATO (+ REGLAS) en una sola escritura (un único fsync)
+     */
+    void appendStart(TimerEntry entry) {
+        try {
+            writeStart(entry);
+            writeAnchor(entry);
+            writeFormat(entry);
+            if (entry.rules != null) {
+                writeRules(entry.id, entry.rules);
+                commitRecords(4);
+            } else {
+                commitRecords(3);
+            }
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error appending START record", e);
+        }
+    }
+
+    void appendAnchor(TimerEntry entry) {
+        try {
+            writeAnchor(entry);
+            commitRecords(1);
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error appending ANCHOR record", e);
+        }
+    }
+
+    /**
+     * Límite de segmento: pausa o reanudación en elapsedRealtime
+     */
+    void appendPause(String id, long realtime) {
+        try {
+            writeSegmentBound(RECORD_PAUSE, id, realtime);
+            commitRecords(1);
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error appending PAUSE record", e);
+        }
+    }
+
+    void appendResume(String id, long realtime) {
+        try {
+            writeSegmentBound(RECORD_RESUME, id, realtime);
+            commitRecords(1);
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error appending RESUME record", e);
+        }
+    }
+
+    void appendStop(String id) {
+        try {
+            recordOut.writeByte(RECORD_STOP);
+            recordOut.writeUTF(id);
+            commitRecords(1);
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error appending STOP record", e);
+        }
+    }
+
+    /**
+     * Reglas nuevas para un timer ya arrancado (null las elimina)
+     */
+    void appendRules(String id, TimerRules rules) {
+        try {
+            writeRules(id, rules);
+            commitRecords(1);
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error appending RULES record", e);
+        }
+    }
+
+    void appendTitle(String id, String title) {
+        try {
+            recordOut.writeByte(RECORD_TITLE);
+            recordOut.writeUTF(id);
+            recordOut.writeUTF(title);
+            commitRecords(1);
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error appending TITLE record", e);
+        }
+    }
+
+    void appendColor(String id, String color) {
+        try {
+            recordOut.writeByte(RECORD_COLOR);
+            recordOut.writeUTF(id);
+            recordOut.writeUTF(color);
+            commitRecords(1);
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error appending COLOR record", e);
+        }
+    }
+
+    /**
+     * Reescribe el journal con solo los timers vivos si ha crecido demasiado
+     */
+    void compactIfNeeded(Collection<TimerEntry> liveTimers) {
+        // Relativo al tamaño compactado: con muchos timers vivos no se reescribe en cada append
+        if (recordCount < Math.max(COMPACT_THRESHOLD, 2 * compactedCount)) {
+            return;
+        }
+        close();
+        File tmp = new File(file.getPath() + ".tmp");
+        int records = 0;
+        try (FileOutputStream tmpOut = new FileOutputStream(tmp)) {
+            recordBuffer.reset();
+            for (TimerEntry entry : liveTimers) {
+                writeStart(entry);
+                writeAnchor(entry);
+                writeFormat(entry);
+                records += 3;
+                if (entry.rules != null) {
+                    writeRules(entry.id, entry.rules);
+                    records++;
+                }
+                // El primer límite es el propio ancla; el resto alterna pausa/reanudación
+                for (int i = 1; i < entry.segmentCount; i++) {
+                    writeSegmentBound((i & 1) == 1 ? RECORD_PAUSE : RECORD_RESUME, entry.id, entry.segments[i]);
+                    records++;
+                }
+            }
+            recordBuffer.writeTo(tmpOut);
+            tmpOut.getFD().sync();
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error compacting journal", e);
+            recordBuffer.reset();
+            tmp.delete();
+            return;
+        }
+        recordBuffer.reset();
+        if (tmp.renameTo(file)) {
+            recordCount = records;
+            compactedCount = records;
+            TimerLog.d(TAG, "Journal compacted", "records", recordCount);
+        } else {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Vacía el journal (todos los timers parados)
+     */
+    void clear() {
+        close();
+        if (file.exists() && !file.delete()) {
+            truncate(0);
+        }
+        recordCount = 0;
+        compactedCount = 0;
+    }
+
+    void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                TimerLog.w(TAG, "Error closing journal", e);
+            }
+            out = null;
+        }
+    }
+
+    private void writeStart(TimerEntry entry) throws IOException {
+        recordOut.writeByte(RECORD_START);
+        recordOut.writeUTF(entry.id);
+        recordOut.writeInt(entry.notificationId);
+        recordOut.writeLong(entry.startTime);
+        recordOut.writeUTF(entry.title);
+        recordOut.writeUTF(entry.body);
+        recordOut.writeUTF(entry.primaryColor);
+    }
+
+    private void writeAnchor(TimerEntry entry) throws IOException {
+        recordOut.writeByte(RECORD_ANCHOR);
+        recordOut.writeUTF(entry.id);
+        recordOut.writeLong(entry.anchorRealtime);
+        recordOut.writeInt(entry.anchorBootCount);
+    }
+
+    private void writeFormat(TimerEntry entry) throws IOException {
+        recordOut.writeByte(RECORD_FORMAT);
+        recordOut.writeUTF(entry.id);
+        recordOut.writeUTF(entry.localeTag);
+        recordOut.writeUTF(entry.startTimePattern);
+    }
+
+    private void writeRules(String id, TimerRules rules) throws IOException {
+        recordOut.writeByte(RECORD_RULES);
+        recordOut.writeUTF(id);
+        recordOut.writeLong(rules != null ? rules.targetMs : 0);
+        recordOut.writeLong(rules != null ? rules.breakAfterMs : 0);
+        recordOut.writeLong(rules != null ? rules.overtimeWarningMs : 0);
+        recordOut.writeLong(rules != null ? rules.hardCapMs : 0);
+    }
+
+    private void writeSegmentBound(byte type, String id, long realtime) throws IOException {
+        recordOut.writeByte(type);
+        recordOut.writeUTF(id);
+        recordOut.writeLong(realtime);
+    }
+
+    private void commitRecords(int records) throws IOException {
+        try {
+            if (out == null) {
+                out = new FileOutputStream(file, true);
+            }
+            recordBuffer.writeTo(out);
+            out.getFD().sync();
+            recordCount += records;
+        } finally {
+            recordBuffer.reset();
+        }
+    }
+
+    private void truncate(long length) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error truncating journal", e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.meycagesal.nativetimer;
+
+import android.util.Log;
+
+/**
+ * 🪵 Fachada de logging del plugin con puerta de nivel.
+ *
+ * Los mensajes son eventos con pares clave=valor opcionales que solo se concatenan si el
+ * nivel está activo, así que un log desactivado no asigna nada (los valores long no se
+ * encajan). En release el nivel por defecto es WARN. Opcionalmente guarda los últimos N
+ * eventos en un buffer circular en memoria para adjuntarlos a un informe de error.
+ */
+final class TimerLog {
+
+    static final int DEBUG = Log.DEBUG;
+    static final int INFO = Log.INFO;
+    static final int WARN = Log.WARN;
+    static final int ERROR = Log.ERROR;
+    static final int NONE = Integer.MAX_VALUE;
+
+    private static final int DEFAULT_LEVEL = BuildConfig.DEBUG ? DEBUG : WARN;
+
+    private static volatile int level = DEFAULT_LEVEL;
+
+    // Buffer circular (null = desactivado)
+    private static volatile String[] ring;
+    private static int ringNext = 0;
+    private static int ringSize = 0;
+
+    private TimerLog() {
+    }
+
+    /**
+     * @param ringCapacity eventos a conservar en memoria (0 desactiva el buffer)
+     */
+    static synchronized void configure(int newLevel, int ringCapacity) {
+        level = newLevel;
+        if (ringCapacity <= 0) {
+            ring = null;
+        } else if (ring == null || ring.length != ringCapacity) {
+            ring = new String[ringCapacity];
+        }
+        ringNext = 0;
+        ringSize = 0;
+    }
+
+    /**
+     * Para mensajes caros de componer: if (TimerLog.isLoggable(TimerLog.DEBUG)) { ... }
+     */
+    static boolean isLoggable(int messageLevel) {
+        return messageLevel >= level;
+    }
+
+    /**
+     * Eventos del buffer circular, del más antiguo al más reciente
+     */
+    static synchronized String[] getRecent() {
+        if (ring == null) {
+            return new String[0];
+        }
+        String[] recent = new String[ringSize];
+        int start = (ringNext - ringSize + ring.length) % ring.length;
+        for (int i = 0; i < ringSize; i++) {
+            recent[i] = ring[(start + i) % ring.length];
+        }
+        return recent;
+    }
+
+    static void d(String tag, String event) {
+        if (DEBUG >= level) write(DEBUG, tag, event, null);
+    }
+
+    static void d(String tag, String event, String key, Object value) {
+        if (DEBUG >= level) write(DEBUG, tag, event + " " + key + "=" + value, null);
+    }
+
+    static void d(String tag, String event, String key, long value) {
+        if (DEBUG >= level) write(DEBUG, tag, event + " " + key + "=" + value, null);
+    }
+
+    static void d(String tag, String event, String key1, Object value1, String key2, long value2) {
+        if (DEBUG >= level) write(DEBUG, tag, event + " " + key1 + "=" + value1 + " " + key2 + "=" + value2, null);
+    }
+
+    static void d(String tag, String event, String key1, long value1, String key2, long value2) {
+        if (DEBUG >= level) write(DEBUG, tag, event + " " + key1 + "=" + value1 + " " + key2 + "=" + value2, null);
+    }
+
+    static void d(String tag, String event, String key1, Object value1, String key2, Object value2) {
+        if (DEBUG >= level) write(DEBUG, tag, event + " " + key1 + "=" + value1 + " " + key2 + "=" + value2, null);
+    }
+
+    static void i(String tag, String event) {
+        if (INFO >= level) write(INFO, tag, event, null);
+    }
+
+    static void i(String tag, String event, String key, Object value) {
+        if (INFO >= level) write(INFO, tag, event + " " + key + "=" + value, null);
+    }
+
+    static void i(String tag, String event, String key, long value) {
+        if (INFO >= level) write(INFO, tag, event + " " + key + "=" + value, null);
+    }
+
+    static void i(String tag, String event, String key1, Object value1, String key2, Object value2) {
+        if (INFO >= level) write(INFO, tag, event + " " + key1 + "=" + value1 + " " + key2 + "=" + value2, null);
+    }
+
+    static void w(String tag, String message) {
+        if (WARN >= level) write(WARN, tag, message, null);
+    }
+
+    static void w(String tag, String message, Throwable error) {
+        if (WARN >= level) write(WARN, tag, message, error);
+    }
+
+    static void w(String tag, String event, String key, Object value) {
+        if (WARN >= level) write(WARN, tag, event + " " + key + "=" + value, null);
+    }
+
+    static void w(String tag, String event, String key, long value) {
+        if (WARN >= level) write(WARN, tag, event + " " + key + "=" + value, null);
+    }
+
+    static void w(String tag, String event, String key, Object value, Throwable error) {
+        if (WARN >= level) write(WARN, tag, event + " " + key + "=" + value, error);
+    }
+
+    static void w(String tag, String event, String key1, Object value1, String key2, long value2) {
+        if (WARN >= level) write(WARN, tag, event + " " + key1 + "=" + value1 + " " + key2 + "=" + value2, null);
+    }
+
+    static void w(String tag, String event, String key1, long value1, String key2, long value2) {
+        if (WARN >= level) write(WARN, tag, event + " " + key1 + "=" + value1 + " " + key2 + "=" + value2, null);
+    }
+
+    static void w(String tag, String event, String key1, long value1, String key2, long value2, Throwable error) {
+        if (WARN >= level) write(WARN, tag, event + " " + key1 + "=" + value1 + " " + key2 + "=" + value2, error);
+    }
+
+    static void e(String tag, String message) {
+        if (ERROR >= level) write(ERROR, tag, message, null);
+    }
+
+    static void e(String tag, String message, Throwable error) {
+        if (ERROR >= level) write(ERROR, tag, message, error);
+    }
+
+    static void e(String tag, String event, String key1, long value1, String key2, long value2) {
+        if (ERROR >= level) write(ERROR, tag, event + " " + key1 + "=" + value1 + " " + key2 + "=" + value2, null);
+    }
+
+    static void e(String tag, String event, String key, Object value, Throwable error) {
+        if (ERROR >= level) write(ERROR, tag, event + " " + key + "=" + value, error);
+    }
+
+    private static void write(int messageLevel, String tag, String message, Throwable error) {
+        Log.println(messageLevel, tag, error != null ? message + '\n' + Log.getStackTraceString(error) : message);
+        if (ring != null) {
+            remember(messageLevel, tag, error != null ? message + " error=" + error : message);
+        }
+    }
+
+    private static synchronized void remember(int messageLevel, String tag, String message) {
+        if (ring == null) {
+            return;
+        }
+        ring[ringNext] = System.currentTimeMillis() + " " + "??VDIWEA".charAt(Math.min(messageLevel, 7)) + "/" + tag + ": " + message;
+        ringNext = (ringNext + 1) % ring.length;
+        ringSize = Math.min(ringSize + 1, ring.length);
+    }
+}
@@ -0,0 +1,54 @@
+package com.meycagesal.nativetimer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 📈 Métricas del camino caliente del servicio, compartidas por todo el proceso.
+ *
+ * Contadores e histogramas son atómicos y sin locks: registrar desde el tick no bloquea
+ * ni asigna. El plugin los lee con getMetrics.
+ */
+final class TimerMetrics {
+
+    // Duración de cada etapa del tick
+    static final LatencyHistogram TICK = new LatencyHistogram();
+    static final LatencyHistogram RENDER = new LatencyHistogram();
+    static final LatencyHistogram NOTIFY = new LatencyHistogram();
+    // Arranque: desde startTimer en el plugin hasta startForeground (plazo de Android) y hasta la notificación completa
+    static final LatencyHistogram STARTUP = new LatencyHistogram();
+    static final LatencyHistogram STARTUP_RICH = new LatencyHistogram();
+
+    static final AtomicLong ticks = new AtomicLong();
+    // notify enviados vs. omitidos por no haber cambios visibles
+    static final AtomicLong postedNotifications = new AtomicLong();
+    static final AtomicLong skippedNotifications = new AtomicLong();
+    static final AtomicLong dismissals = new AtomicLong();
+    static final AtomicLong restarts = new AtomicLong(); // Procesos recreados con timers en el journal
+    // updateNotification fusionados con uno pendiente vs. notify aplazados por el token bucket
+    static final AtomicLong coalescedCommands = new AtomicLong();
+    static final AtomicLong rateLimitedNotifications = new AtomicLong();
+
+    // Secciones de android.os.Trace (visibles en Perfetto/systrace)
+    static final String TRACE_TICK = "NativeTimer#tick";
+    static final String TRACE_RENDER = "NativeTimer#render";
+    static final String TRACE_NOTIFY = "NativeTimer#notify";
+    static final String TRACE_STARTUP = "NativeTimer#startup";
+
+    private TimerMetrics() {
+    }
+
+    static void reset() {
+        TICK.reset();
+        RENDER.reset();
+        NOTIFY.reset();
+        STARTUP.reset();
+        STARTUP_RICH.reset();
+        ticks.set(0);
+        postedNotifications.set(0);
+        skippedNotifications.set(0);
+        dismissals.set(0);
+        restarts.set(0);
+        coalescedCommands.set(0);
+        rateLimitedNotifications.set(0);
+    }
+}
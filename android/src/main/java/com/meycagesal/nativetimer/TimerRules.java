@@ -0,0 +1,149 @@
+package com.meycagesal.nativetimer;
+
+/**
+ * 🚦 Umbrales de la jornada de un timer (objetivo, descanso obligatorio, aviso de horas
+ * extra y límite máximo), todos en tiempo activo (ms, las pausas no cuentan; 0 = sin regla).
+ *
+ * Las reglas se compilan en un array ordenado con los umbrales aún pendientes, así que cada
+ * tick hace una sola comparación contra el siguiente en vez de evaluar todas las reglas.
+ * Solo el hilo del servicio lee y modifica el estado compilado.
+ */
+final class TimerRules {
+
+    static final int TARGET = 1;
+    static final int BREAK_REQUIRED = 1 << 1;
+    static final int OVERTIME_WARNING = 1 << 2;
+    static final int HARD_CAP = 1 << 3;
+
+    static final long DEFAULT_PROGRESS_MAX_MS = 8 * 60 * 60 * 1000L;
+
+    interface Listener {
+        void onThresholdCrossed(int rule, long thresholdMs);
+    }
+
+    final long targetMs;
+    final long breakAfterMs; // Tiempo activo continuo (desde la última reanudación)
+    final long overtimeWarningMs;
+    final long hardCapMs;
+
+    // Umbrales pendientes ordenados por tiempo activo; next apunta al siguiente
+    private final long[] fireAt = new long[4];
+    private final int[] fireRule = new int[4];
+    private int count = 0;
+    private int next = 0;
+    private int crossed = 0; // Máscara de reglas superadas
+
+    TimerRules(long targetMs, long breakAfterMs, long overtimeWarningMs, long hardCapMs) {
+        this.targetMs = Math.max(0, targetMs);
+        this.breakAfterMs = Math.max(0, breakAfterMs);
+        this.overtimeWarningMs = Math.max(0, overtimeWarningMs);
+        this.hardCapMs = Math.max(0, hardCapMs);
+    }
+
+    /**
+     * @return null si no hay ninguna regla activa
+     */
+    static TimerRules of(long targetMs, long breakAfterMs, long overtimeWarningMs, long hardCapMs) {
+        if (targetMs <= 0 && breakAfterMs <= 0 && overtimeWarningMs <= 0 && hardCapMs <= 0) {
+            return null;
+        }
+        return new TimerRules(targetMs, breakAfterMs, overtimeWarningMs, hardCapMs);
+    }
+
+    boolean sameAs(TimerRules other) {
+        return other != null
+                && targetMs == other.targetMs
+                && breakAfterMs == other.breakAfterMs
+                && overtimeWarningMs == other.overtimeWarningMs
+                && hardCapMs == other.hardCapMs;
+    }
+
+    int getCrossed() {
+        return crossed;
+    }
+
+    /**
+     * Recalcula los umbrales pendientes. Los que ya quedan por debajo de elapsed se marcan
+     * como superados sin avisar (timer restaurado o reglas cambiadas a mitad de jornada).
+     * @param segmentStartElapsed tiempo activo al inicio del segmento actual (base del descanso)
+     */
+    void compile(long elapsed, long segmentStartElapsed) {
+        count = 0;
+        next = 0;
+        add(TARGET, targetMs, elapsed);
+        add(OVERTIME_WARNING, overtimeWarningMs, elapsed);
+        add(HARD_CAP, hardCapMs, elapsed);
+        if (breakAfterMs > 0) {
+            add(BREAK_REQUIRED, segmentStartElapsed + breakAfterMs, elapsed);
+        }
+    }
+
+    /**
+     * Una pausa cumple el descanso obligatorio; al reanudar se vuelve a compilar
+     */
+    void onPause() {
+        crossed &= ~BREAK_REQUIRED;
+    }
+
+    /**
+     * La comprobación de cada tick: una sola comparación contra el siguiente umbral
+     */
+    boolean isDue(long elapsed) {
+        return next < count && elapsed >= fireAt[next];
+    }
+
+    /**
+     * Marca como superados y notifica todos los umbrales alcanzados, en orden
+     */
+    void evaluate(long elapsed, Listener listener) {
+        while (next < count && elapsed >= fireAt[next]) {
+            crossed |= fireRule[next];
+            listener.onThresholdCrossed(fireRule[next], fireAt[next]);
+            next++;
+        }
+    }
+
+    /**
+     * ms de tiempo activo hasta el siguiente umbral, o -1 si no queda ninguno
+     */
+    long delayToNext(long elapsed) {
+        return next < count ? Math.max(0, fireAt[next] - elapsed) : -1;
+    }
+
+    /**
+     * Máximo de la barra de progreso: el objetivo si lo hay, si no 8 horas
+     */
+    long getProgressMaxMs() {
+        return targetMs > 0 ? targetMs : DEFAULT_PROGRESS_MAX_MS;
+    }
+
+    static String ruleName(int rule) {
+        switch (rule) {
+            case TARGET: return "target";
+            case BREAK_REQUIRED: return "breakRequired";
+            case OVERTIME_WARNING: return "overtimeWarning";
+            case HARD_CAP: return "hardCap";
+            default: return "unknown";
+        }
+    }
+
+    private void add(int rule, long threshold, long elapsed) {
+        if (threshold <= 0) {
+            return;
+        }
+        if (threshold <= elapsed) {
+            crossed |= rule;
+            return;
+        }
+        crossed &= ~rule;
+        // Inserción ordenada: como mucho 4 elementos
+        int i = count++;
+        while (i > 0 && fireAt[i - 1] > threshold) {
+            fireAt[i] = fireAt[i - 1];
+            fireRule[i] = fireRule[i - 1];
+            i--;
+        }
+        fireAt[i] = threshold;
+        fireRule[i] = rule;
+    }
+}
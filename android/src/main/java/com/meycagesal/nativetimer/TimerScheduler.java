@@ -0,0 +1,170 @@
+package com.meycagesal.nativetimer;
+
+/**
+ * ⏱️ Planificador único para todos los timers activos.
+ *
+ * Mantiene un min-heap de timers ordenado por su próximo vencimiento y un solo
+ * Runnable en el Handler del servicio (vía {@link TickScheduler}), armado para el
+ * vencimiento más cercano.
+ * Añadir timers no añade Runnables: el coste por tick es O(log n) por timer vencido.
+ */
+final class TimerScheduler {
+
+    interface Listener {
+        /**
+         * Llamado cuando un timer vence.
+         * @return retardo en ms hasta el siguiente vencimiento, o -1 para no reprogramarlo
+         */
+        long onTimerDue(TimerEntry entry);
+    }
+
+    private final TickScheduler ticks;
+    private final TimerClock clock;
+    private final Listener listener;
+    private final Runnable tickRunnable = this::tick;
+
+    private TimerEntry[] heap = new TimerEntry[4];
+    private int size = 0;
+    private long armedAt = Long.MAX_VALUE;
+    private boolean ticking = false;
+
+    TimerScheduler(TickScheduler ticks, TimerClock clock, Listener listener) {
+        this.ticks = ticks;
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    void schedule(TimerEntry entry, long delayMs) {
+        entry.nextDueAt = clock.uptime() + Math.max(0, delayMs);
+        if (entry.heapIndex >= 0) {
+            siftUp(entry.heapIndex);
+            siftDown(entry.heapIndex);
+        } else {
+            insert(entry);
+        }
+        rearm();
+    }
+
+    void cancel(TimerEntry entry) {
+        if (entry.heapIndex >= 0) {
+            removeAt(entry.heapIndex);
+            rearm();
+        }
+    }
+
+    void cancelAll() {
+        for (int i = 0; i < size; i++) {
+            heap[i].heapIndex = -1;
+            heap[i] = null;
+        }
+        size = 0;
+        rearm();
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void tick() {
+        armedAt = Long.MAX_VALUE;
+        ticking = true;
+        try {
+            long now = clock.uptime();
+            while (size > 0 && heap[0].nextDueAt <= now) {
+                TimerEntry entry = heap[0];
+                removeAt(0);
+                long nextDelay = listener.onTimerDue(entry);
+                // El listener puede haber reprogramado o cancelado el timer por su cuenta
+                if (nextDelay >= 0 && entry.heapIndex < 0) {
+                    entry.nextDueAt = now + nextDelay;
+                    insert(entry);
+                }
+            }
+        } finally {
+            ticking = false;
+        }
+        rearm();
+    }
+
+    private void rearm() {
+        if (ticking) {
+            return;
+        }
+        if (size == 0) {
+            if (armedAt != Long.MAX_VALUE) {
+                ticks.remove(tickRunnable);
+                armedAt = Long.MAX_VALUE;
+            }
+            return;
+        }
+        long due = heap[0].nextDueAt;
+        if (due != armedAt) {
+            ticks.remove(tickRunnable);
+            ticks.postAtTime(tickRunnable, due);
+            armedAt = due;
+        }
+    }
+
+    // --- Min-heap por nextDueAt ---
+
+    private void insert(TimerEntry entry) {
+        if (size == heap.length) {
+            TimerEntry[] grown = new TimerEntry[size * 2];
+            System.arraycopy(heap, 0, grown, 0, size);
+            heap = grown;
+        }
+        heap[size] = entry;
+        entry.heapIndex = size;
+        size++;
+        siftUp(entry.heapIndex);
+    }
+
+    private void removeAt(int index) {
+        TimerEntry removed = heap[index];
+        size--;
+        TimerEntry moved = heap[size];
+        heap[size] = null;
+        if (index != size) {
+            heap[index] = moved;
+            moved.heapIndex = index;
+            siftUp(index);
+            siftDown(moved.heapIndex);
+        }
+        removed.heapIndex = -1;
+    }
+
+    private void siftUp(int index) {
+        TimerEntry entry = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].nextDueAt <= entry.nextDueAt) {
+                break;
+            }
+            heap[index] = heap[parent];
+            heap[index].heapIndex = index;
+            index = parent;
+        }
+        heap[index] = entry;
+        entry.heapIndex = index;
+    }
+
+    private void siftDown(int index) {
+        TimerEntry entry = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && heap[right].nextDueAt < heap[child].nextDueAt) {
+                child = right;
+            }
+            if (entry.nextDueAt <= heap[child].nextDueAt) {
+                break;
+            }
+            heap[index] = heap[child];
+            heap[index].heapIndex = index;
+            index = child;
+        }
+        heap[index] = entry;
+        entry.heapIndex = index;
+    }
+}
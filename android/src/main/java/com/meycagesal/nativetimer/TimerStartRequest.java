@@ -0,0 +1,56 @@
+package com.meycagesal.nativetimer;
+
+import android.content.Intent;
+
+/**
+ * Parámetros de startTimer, compartidos por el Intent de arranque en frío y el LocalBinder
+ */
+final class TimerStartRequest {
+
+    String timerId = NativeTimerService.DEFAULT_TIMER_ID;
+    long startTime;
+    String title;
+    String body;
+    String primaryColor;
+    String localeTag; // BCP 47, p.ej. "es-ES"
+    String startTimePattern; // Patrón SimpleDateFormat de la fecha de inicio
+    TimerRules rules; // null = sin umbrales de jornada
+    long requestedAtNanos; // System.nanoTime() de la llamada en el plugin (0 = desconocido)
+
+    static TimerStartRequest fromIntent(Intent intent) {
+        TimerStartRequest request = new TimerStartRequest();
+        String timerId = intent.getStringExtra("timerId");
+        if (timerId != null) request.timerId = timerId;
+        request.startTime = intent.getLongExtra("startTime", NativeTimerService.getClock().wallTime());
+        request.title = intent.getStringExtra("title");
+        request.body = intent.getStringExtra("body");
+        request.primaryColor = intent.getStringExtra("primaryColor");
+        request.localeTag = intent.getStringExtra("locale");
+        request.startTimePattern = intent.getStringExtra("startTimePattern");
+        request.requestedAtNanos = intent.getLongExtra("requestedAtNanos", 0);
+        request.rules = TimerRules.of(
+            intent.getLongExtra("ruleTarget", 0),
+            intent.getLongExtra("ruleBreakAfter", 0),
+            intent.getLongExtra("ruleOvertimeWarning", 0),
+            intent.getLongExtra("ruleHardCap", 0));
+        return request;
+    }
+
+    void writeTo(Intent intent) {
+        intent.putExtra("action", "START_TIMER");
+        intent.putExtra("timerId", timerId);
+        intent.putExtra("startTime", startTime);
+        intent.putExtra("title", title);
+        intent.putExtra("body", body);
+        intent.putExtra("primaryColor", primaryColor);
+        if (localeTag != null) intent.putExtra("locale", localeTag);
+        if (startTimePattern != null) intent.putExtra("startTimePattern", startTimePattern);
+        intent.putExtra("requestedAtNanos", requestedAtNanos);
+        if (rules != null) {
+            intent.putExtra("ruleTarget", rules.targetMs);
+            intent.putExtra("ruleBreakAfter", rules.breakAfterMs);
+            intent.putExtra("ruleOvertimeWarning", rules.overtimeWarningMs);
+            intent.putExtra("ruleHardCap", rules.hardCapMs);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.meycagesal.nativetimer;
+
+/**
+ * 📸 Foto inmutable del estado de los timers para widgets, tiles de Quick Settings u otros
+ * componentes de la app. Se obtiene con {@link TimerStateStore#get} sin despertar al servicio.
+ *
+ * El tiempo transcurrido no se publica en cada tick: cada timer lleva una base de reloj de
+ * pared (como el cronómetro de la notificación) y el lector lo calcula con {@link Timer#getElapsed}.
+ * {@link #version} solo cambia cuando cambia algo visible, así que basta compararla para
+ * saber si hay que redibujar.
+ */
+public final class TimerState {
+
+    public static final TimerState EMPTY = new TimerState(0, new Timer[0]);
+
+    public final long version;
+    private final Timer[] timers;
+
+    TimerState(long version, Timer[] timers) {
+        this.version = version;
+        this.timers = timers;
+    }
+
+    public boolean isRunning() {
+        return timers.length > 0;
+    }
+
+    public int getTimerCount() {
+        return timers.length;
+    }
+
+    public Timer getTimer(int index) {
+        return timers[index];
+    }
+
+    /**
+     * @return null si no hay ningún timer con ese id
+     */
+    public Timer findTimer(String id) {
+        for (Timer timer : timers) {
+            if (timer.id.equals(id)) {
+                return timer;
+            }
+        }
+        return null;
+    }
+
+    Timer[] timers() {
+        return timers;
+    }
+
+    boolean sameContentAs(TimerState other) {
+        if (other == null || other.timers.length != timers.length) {
+            return false;
+        }
+        for (int i = 0; i < timers.length; i++) {
+            if (!timers[i].sameAs(other.timers[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static final class Timer {
+        public final String id;
+        public final String title;
+        public final String primaryColor;
+        public final long startTime;
+        public final boolean paused;
+        /** Máscara de umbrales de jornada superados (ver startTimer rules) */
+        public final int crossedRules;
+        // Corriendo: elapsed = ahora - chronometerBase. En pausa: pausedElapsed (la base no se usa)
+        final long chronometerBase;
+        final long pausedElapsed;
+
+        Timer(String id, String title, String primaryColor, long startTime, boolean paused,
+              int crossedRules, long chronometerBase, long pausedElapsed) {
+            this.id = id;
+            this.title = title;
+            this.primaryColor = primaryColor;
+            this.startTime = startTime;
+            this.paused = paused;
+            this.crossedRules = crossedRules;
+            this.chronometerBase = chronometerBase;
+            this.pausedElapsed = pausedElapsed;
+        }
+
+        /**
+         * Tiempo activo en ms sin contar pausas, p.ej. con System.currentTimeMillis()
+         */
+        public long getElapsed(long wallNow) {
+            return paused ? pausedElapsed : wallNow - chronometerBase;
+        }
+
+        /**
+         * Base para Chronometer/RemoteViews.setChronometer, que usa elapsedRealtime
+         */
+        public long getChronometerBase(long wallNow, long realtimeNow) {
+            return realtimeNow - getElapsed(wallNow);
+        }
+
+        boolean sameAs(Timer other) {
+            if (!id.equals(other.id)
+                    || !title.equals(other.title)
+                    || !primaryColor.equals(other.primaryColor)
+                    || startTime != other.startTime
+                    || paused != other.paused
+                    || crossedRules != other.crossedRules) {
+                return false;
+            }
+            // En pausa la base (pared - transcurrido) avanza con el reloj: solo cuenta el valor congelado.
+            // Corriendo, la base se compara con margen: re-derivarla da pequeñas diferencias de reloj
+            return paused
+                    ? pausedElapsed == other.pausedElapsed
+                    : Math.abs(chronometerBase - other.chronometerBase) < 1000;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.meycagesal.nativetimer;
+
+import android.content.Context;
+import android.content.Intent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 🗃️ Publicación del último {@link TimerState}.
+ *
+ * El servicio publica una foto nueva solo cuando cambia algo visible (inicio, parada, pausa,
+ * título, color o umbral), nunca en cada tick. Los lectores hacen una sola lectura de una
+ * AtomicReference, sin locks ni Intents al servicio. Una copia compacta en disco sirve a
+ * los lectores de otros procesos (p.ej. un widget que se actualiza con la app cerrada):
+ * la vuelven a leer solo cuando cambia su fecha de modificación. Tras cada publicación se
+ * emite {@link #ACTION_STATE_CHANGED}, limitado al paquete.
+ */
+public final class TimerStateStore {
+
+    private static final String TAG = "TimerStateStore";
+    private static final String STATE_FILE = "native_timer_state.bin";
+    private static final byte FORMAT_VERSION = 1;
+
+    public static final String ACTION_STATE_CHANGED = "com.meycagesal.nativetimer.STATE_CHANGED";
+    public static final String EXTRA_VERSION = "version";
+
+    private static final AtomicReference<TimerState> current = new AtomicReference<>();
+    // El proceso del servicio publica: su copia en memoria siempre es la última
+    private static volatile boolean publisher = false;
+    private static volatile long loadedModified = -1; // Fecha de la copia en disco ya leída
+
+    private TimerStateStore() {
+    }
+
+    /**
+     * Estado publicado más reciente. En el proceso del servicio es una lectura atómica; en
+     * otro proceso añade un stat del fichero y solo lo relee si otra publicación lo reescribió.
+     */
+    public static TimerState get(Context context) {
+        TimerState state = current.get();
+        if (publisher && state != null) {
+            return state;
+        }
+        return read(getFile(context));
+    }
+
+    static TimerState read(File file) {
+        TimerState state = current.get();
+        long modified = file.lastModified(); // 0 si no existe
+        if (state != null && modified == loadedModified) {
+            return state;
+        }
+        TimerState loaded = load(file);
+        loadedModified = modified;
+        // Una lectura concurrente pudo dejar ya una versión más nueva: nunca retroceder
+        while (true) {
+            TimerState existing = current.get();
+            if (existing != null && existing.version >= loaded.version) {
+                return existing;
+            }
+            if (current.compareAndSet(existing, loaded)) {
+                return loaded;
+            }
+        }
+    }
+
+    /**
+     * Publica timers como nueva versión si difiere de la actual. Solo desde el hilo del servicio.
+     * @return true si se publicó una versión nueva
+     */
+    static boolean publish(Context context, TimerState.Timer[] timers) {
+        TimerState next = publish(getFile(context), timers);
+        if (next == null) {
+            return false;
+        }
+        Intent changed = new Intent(ACTION_STATE_CHANGED);
+        changed.setPackage(context.getPackageName());
+        changed.putExtra(EXTRA_VERSION, next.version);
+        context.sendBroadcast(changed);
+        TimerLog.d(TAG, "State published", "version", next.version, "timers", timers.length);
+        return true;
+    }
+
+    /**
+     * @return la versión nueva, o null si nada cambió
+     */
+    static TimerState publish(File file, TimerState.Timer[] timers) {
+        TimerState previous = publisher ? current.get() : null;
+        if (previous == null) {
+            // Primera publicación del proceso: continuar la numeración de la copia en disco
+            previous = read(file);
+        }
+        publisher = true;
+        TimerState next = new TimerState(previous.version + 1, timers);
+        if (next.sameContentAs(previous)) {
+            return null;
+        }
+        current.set(next);
+        save(file, next);
+        return next;
+    }
+
+    /**
+     * Olvida el estado en memoria, como un proceso recién arrancado. Solo para tests
+     */
+    static void reset() {
+        current.set(null);
+        publisher = false;
+        loadedModified = -1;
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getApplicationContext().getFilesDir(), STATE_FILE);
+    }
+
+    static void save(File file, TimerState state) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(state.version);
+            out.writeInt(state.getTimerCount());
+            for (TimerState.Timer timer : state.timers()) {
+                out.writeUTF(timer.id);
+                out.writeUTF(timer.title);
+                out.writeUTF(timer.primaryColor);
+                out.writeLong(timer.startTime);
+                out.writeBoolean(timer.paused);
+                out.writeInt(timer.crossedRules);
+                out.writeLong(timer.chronometerBase);
+                out.writeLong(timer.pausedElapsed);
+            }
+            // Escribir aparte y renombrar: un lector nunca ve un fichero a medias
+            try (FileOutputStream tmpOut = new FileOutputStream(tmp)) {
+                bytes.writeTo(tmpOut);
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmp);
+            }
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error saving timer state", e);
+            tmp.delete();
+        }
+    }
+
+    static TimerState load(File file) {
+        if (!file.exists()) {
+            return TimerState.EMPTY;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readByte() != FORMAT_VERSION) {
+                return TimerState.EMPTY;
+            }
+            long version = in.readLong();
+            int count = in.readInt();
+            TimerState.Timer[] timers = new TimerState.Timer[count];
+            for (int i = 0; i < count; i++) {
+                timers[i] = new TimerState.Timer(
+                    in.readUTF(), in.readUTF(), in.readUTF(), in.readLong(),
+                    in.readBoolean(), in.readInt(), in.readLong(), in.readLong());
+            }
+            return new TimerState(version, timers);
+        } catch (IOException e) {
+            TimerLog.w(TAG, "Error loading timer state", e);
+            return TimerState.EMPTY;
+        }
+    }
+}
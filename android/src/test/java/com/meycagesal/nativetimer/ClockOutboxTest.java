@@ -0,0 +1,334 @@
+package com.meycagesal.nativetimer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * Outbox contra un backend simulado: agrupación, claves de idempotencia, backoff y cada
+ * clase de fallo. El worker es el main Looper de Robolectric, así que el tiempo lo avanza el test
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ClockOutboxTest {
+
+    private static final long COALESCE_MS = 2000;
+    private static final long TIMESTAMP = 1_760_000_000_000L;
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+    private MockWebServer server;
+    private File file;
+    private SharedPreferences prefs;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        Context context = RuntimeEnvironment.getApplication();
+        file = new File(context.getFilesDir(), "outbox-test.bin");
+        file.delete();
+        prefs = context.getSharedPreferences("outbox-test", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        file.delete();
+    }
+
+    private ClockOutbox newOutbox() {
+        ClockOutbox outbox = new ClockOutbox(file, prefs, new Handler(Looper.getMainLooper()));
+        idle();
+        return outbox;
+    }
+
+    private void configure(ClockOutbox outbox, Map<String, String> headers, int batchSize) {
+        outbox.configure(server.url("/clock").toString(), headers, batchSize);
+        idle();
+    }
+
+    private static void enqueue(ClockOutbox outbox, String... types) {
+        for (int i = 0; i < types.length; i++) {
+            outbox.enqueue(types[i], "default", TIMESTAMP + i);
+        }
+        idle();
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private static void advance(long ms) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(ms));
+    }
+
+    private void respond(int... statuses) {
+        for (int status : statuses) {
+            server.enqueue(new MockResponse().setResponseCode(status));
+        }
+    }
+
+    private RecordedRequest takeRequest() throws InterruptedException {
+        RecordedRequest request = server.takeRequest(1, TimeUnit.SECONDS);
+        assertNotNull("No request reached the server", request);
+        return request;
+    }
+
+    private static JSONArray events(RecordedRequest request) throws JSONException {
+        return new JSONObject(request.getBody().readUtf8()).getJSONArray("events");
+    }
+
+    @Test
+    public void eventsWithinWindowShareOneRequest() throws Exception {
+        ClockOutbox outbox = newOutbox();
+        configure(outbox, NO_HEADERS, 50);
+        respond(200);
+
+        enqueue(outbox, ClockOutbox.EVENT_START, ClockOutbox.EVENT_PAUSE, ClockOutbox.EVENT_RESUME);
+        advance(COALESCE_MS - 1);
+        assertEquals(0, server.getRequestCount());
+        advance(1);
+        assertEquals(1, server.getRequestCount());
+
+        RecordedRequest request = takeRequest();
+        assertEquals("POST", request.getMethod());
+        JSONArray events = events(request);
+        assertEquals(3, events.length());
+        assertEquals("start", events.getJSONObject(0).getString("type"));
+        assertEquals("pause", events.getJSONObject(1).getString("type"));
+        assertEquals("resume", events.getJSONObject(2).getString("type"));
+        assertEquals(TIMESTAMP + 2, events.getJSONObject(2).getLong("timestamp"));
+        assertEquals(events.getJSONObject(0).getString("key") + "/3", request.getHeader("Idempotency-Key"));
+        assertEquals(0, outbox.getQueueDepth());
+        assertEquals(0, outbox.getConsecutiveFailures());
+        assertTrue(outbox.getLastSuccessAt() > 0);
+    }
+
+    @Test
+    public void batchSizeSplitsQueue() throws Exception {
+        ClockOutbox outbox = newOutbox();
+        configure(outbox, NO_HEADERS, 2);
+        respond(200, 200, 200);
+
+        enqueue(outbox, "start", "pause", "resume", "pause", "stop");
+        advance(COALESCE_MS);
+        assertEquals(3, server.getRequestCount());
+        assertEquals(2, events(takeRequest()).length());
+        assertEquals(2, events(takeRequest()).length());
+        assertEquals("stop", events(takeRequest()).getJSONObject(0).getString("type"));
+        assertEquals(0, outbox.getQueueDepth());
+    }
+
+    @Test
+    public void retryKeepsIdempotencyKeys() throws Exception {
+        ClockOutbox outbox = newOutbox();
+        configure(outbox, NO_HEADERS, 50);
+        respond(503, 200);
+
+        enqueue(outbox, "start", "stop");
+        advance(COALESCE_MS);
+        RecordedRequest first = takeRequest();
+        assertEquals(1, outbox.getConsecutiveFailures());
+        assertEquals("http 503", outbox.getLastError());
+        assertEquals(2, outbox.getQueueDepth());
+
+        advance(6000);
+        RecordedRequest retry = takeRequest();
+        assertEquals(first.getHeader("Idempotency-Key"), retry.getHeader("Idempotency-Key"));
+        JSONArray before = events(first);
+        JSONArray after = events(retry);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(before.getJSONObject(i).getString("key"), after.getJSONObject(i).getString("key"));
+        }
+        assertEquals(0, outbox.getQueueDepth());
+        assertEquals(0, outbox.getConsecutiveFailures());
+        assertNull(outbox.getLastError());
+    }
+
+    @Test
+    public void backoffDoublesWithJitter() {
+        ClockOutbox outbox = newOutbox();
+        configure(outbox, NO_HEADERS, 50);
+        respond(500, 500, 500, 200);
+        enqueue(outbox, "start");
+
+        // Instante de cada intento, muestreado cada 10 ms
+        long[] sentAt = new long[4];
+        int seen = 0;
+        for (int step = 0; step < 6000 && seen < sentAt.length; step++) {
+            advance(10);
+            if (server.getRequestCount() > seen) {
+                sentAt[seen++] = SystemClock.elapsedRealtime();
+            }
+        }
+        assertEquals(4, seen);
+
+        // Reintentos a 5 s, 10 s y 20 s del fallo anterior, con hasta +20% de jitter
+        long[] backoffs = {5000, 10000, 20000};
+        for (int i = 0; i < backoffs.length; i++) {
+            long gap = sentAt[i + 1] - sentAt[i];
+            assertTrue("gap " + gap, gap >= backoffs[i] - 10 && gap <= backoffs[i] * 6 / 5 + 10);
+        }
+        assertEquals(0, outbox.getQueueDepth());
+    }
+
+    @Test
+    public void unauthorizedKeepsBatchUntilReconfigured() throws Exception {
+        assertPausedUntilReconfigured(401);
+    }
+
+    @Test
+    public void forbiddenKeepsBatchUntilReconfigured() throws Exception {
+        assertPausedUntilReconfigured(403);
+    }
+
+    private void assertPausedUntilReconfigured(int status) throws Exception {
+        ClockOutbox outbox = newOutbox();
+        configure(outbox, Collections.singletonMap("Authorization", "Bearer old"), 50);
+        respond(status);
+
+        enqueue(outbox, "start", "pause");
+        advance(COALESCE_MS);
+        RecordedRequest rejected = takeRequest();
+        assertEquals("Bearer old", rejected.getHeader("Authorization"));
+        assertTrue(outbox.isAwaitingCredentials());
+        assertEquals(2, outbox.getQueueDepth());
+        assertEquals(0, outbox.getDroppedEvents());
+        assertEquals("http " + status, outbox.getLastError());
+
+        // Ni el backoff ni eventos nuevos reintentan con las cabeceras rechazadas
+        advance(30 * 60 * 1000);
+        enqueue(outbox, "resume");
+        advance(COALESCE_MS);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(3, outbox.getQueueDepth());
+
+        respond(200);
+        configure(outbox, Collections.singletonMap("Authorization", "Bearer new"), 50);
+        RecordedRequest resent = takeRequest();
+        assertEquals("Bearer new", resent.getHeader("Authorization"));
+        assertEquals(3, events(resent).length());
+        assertEquals(events(rejected).getJSONObject(0).getString("key"),
+                events(resent).getJSONObject(0).getString("key"));
+        assertFalse(outbox.isAwaitingCredentials());
+        assertEquals(0, outbox.getQueueDepth());
+    }
+
+    @Test
+    public void badRequestDropsBatchAndCountsIt() throws Exception {
+        assertRejectedBatchDropped(400);
+    }
+
+    @Test
+    public void unprocessableEntityDropsBatchAndCountsIt() throws Exception {
+        assertRejectedBatchDropped(422);
+    }
+
+    private void assertRejectedBatchDropped(int status) throws Exception {
+        ClockOutbox outbox = newOutbox();
+        configure(outbox, NO_HEADERS, 2);
+        respond(status, 200);
+
+        enqueue(outbox, "start", "pause", "resume");
+        advance(COALESCE_MS);
+        assertEquals(2, server.getRequestCount());
+        assertEquals(2, events(takeRequest()).length());
+        // El resto de la cola sigue su curso sin esperar backoff
+        assertEquals("resume", events(takeRequest()).getJSONObject(0).getString("type"));
+        assertEquals(2, outbox.getDroppedEvents());
+        assertEquals(0, outbox.getQueueDepth());
+        assertEquals(0, outbox.getConsecutiveFailures());
+    }
+
+    @Test
+    public void notFoundIsRetried() throws Exception {
+        ClockOutbox outbox = newOutbox();
+        configure(outbox, NO_HEADERS, 50);
+        respond(404, 200);
+
+        enqueue(outbox, "start");
+        advance(COALESCE_MS);
+        assertEquals(1, outbox.getQueueDepth());
+        assertEquals(0, outbox.getDroppedEvents());
+        assertEquals("http 404", outbox.getLastError());
+
+        advance(6000);
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, outbox.getQueueDepth());
+    }
+
+    @Test
+    public void networkErrorIsRetried() throws Exception {
+        ClockOutbox outbox = newOutbox();
+        configure(outbox, NO_HEADERS, 50);
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        respond(200);
+
+        enqueue(outbox, "start");
+        advance(COALESCE_MS);
+        assertEquals(1, outbox.getQueueDepth());
+        assertEquals(1, outbox.getConsecutiveFailures());
+        assertTrue(outbox.getLastError(), outbox.getLastError().startsWith("network: "));
+
+        advance(6000);
+        assertEquals(0, outbox.getQueueDepth());
+        assertEquals(0, outbox.getConsecutiveFailures());
+    }
+
+    @Test
+    public void pendingEventsSurviveRestartWithoutHeaders() throws Exception {
+        ClockOutbox outbox = newOutbox();
+        configure(outbox, Collections.singletonMap("Authorization", "Bearer old"), 50);
+        respond(401);
+        enqueue(outbox, "start", "stop");
+        advance(COALESCE_MS);
+        String key = events(takeRequest()).getJSONObject(0).getString("key");
+
+        // Proceso nuevo: la cola vuelve del fichero, pero sin cabeceras no se envía nada
+        ClockOutbox restarted = newOutbox();
+        assertEquals(2, restarted.getQueueDepth());
+        advance(60 * 1000);
+        assertEquals(1, server.getRequestCount());
+
+        respond(200);
+        configure(restarted, Collections.singletonMap("Authorization", "Bearer new"), 50);
+        JSONArray resent = events(takeRequest());
+        assertEquals(2, resent.length());
+        assertEquals(key, resent.getJSONObject(0).getString("key"));
+        assertEquals(0, restarted.getQueueDepth());
+        assertFalse(file.exists());
+    }
+}
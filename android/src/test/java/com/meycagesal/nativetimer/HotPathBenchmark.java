@@ -0,0 +1,122 @@
+package com.meycagesal.nativetimer;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * 🏎️ Microbenchmarks del camino caliente del tick en la JVM del host, sin emulador.
+ *
+ * Desactivados por defecto; se lanzan con:
+ *   ./gradlew testDebugUnitTest -PnativeTimerBenchmark --tests '*HotPathBenchmark'
+ * Cada caso imprime ns/op y bytes asignados/op (ThreadMXBean). Los caminos que deben ser
+ * libres de asignaciones en régimen estable fallan si asignan: eso es lo que protege de
+ * regresiones. Los ns/op solo se informan, dependen demasiado de la máquina para un umbral.
+ * Lo que necesita el framework (Intent, notificaciones) está en androidTest/IntentDispatchBenchmark.
+ */
+public class HotPathBenchmark {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final int WARMUP_OPS = 50_000;
+    private static final int MEASURED_OPS = 200_000;
+
+    interface Op {
+        long run(int i);
+    }
+
+    private com.sun.management.ThreadMXBean allocations;
+    private long sink;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("-PnativeTimerBenchmark", Boolean.getBoolean("nativetimer.benchmark"));
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+    }
+
+    /**
+     * @return bytes asignados por operación
+     */
+    private double measure(String name, Op op) {
+        for (int i = 0; i < WARMUP_OPS; i++) {
+            sink += op.run(i);
+        }
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = allocations.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_OPS; i++) {
+            sink += op.run(i);
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = allocations.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        double bytesPerOp = (double) bytes / MEASURED_OPS;
+        System.out.println(String.format(Locale.ROOT, "%-36s %10.1f ns/op %10.2f B/op",
+                name, (double) nanos / MEASURED_OPS, bytesPerOp));
+        return bytesPerOp;
+    }
+
+    @Test
+    public void formatElapsedSameMinute() {
+        TimeFormatter formatter = new TimeFormatter();
+        double bytes = measure("formatElapsed (mismo minuto)",
+                i -> formatter.formatElapsed(5 * 60 * MINUTE + (i % 60) * 1000).length());
+        assertTrue(bytes < 0.01);
+    }
+
+    @Test
+    public void formatElapsedMinuteChange() {
+        TimeFormatter formatter = new TimeFormatter();
+        // Peor caso: cada llamada cambia de minuto y compone un String nuevo
+        measure("formatElapsed (cambio de minuto)", i -> formatter.formatElapsed(i * MINUTE).length());
+    }
+
+    @Test
+    public void formatStartTime() {
+        TimeFormatter formatter = new TimeFormatter();
+        measure("formatStartTime", i -> formatter.formatStartTime(1_760_000_000_000L + i * MINUTE, null, null).length());
+    }
+
+    @Test
+    public void parseColor() {
+        String[] colors = {"#0045a5", "ff0045a5", "#80FF8800", "#zzzzzz"};
+        double bytes = measure("ColorParser.parse", i -> ColorParser.parse(colors[i & 3]));
+        assertTrue(bytes < 0.01);
+    }
+
+    @Test
+    public void schedulerTickWithTimers() {
+        VirtualClock clock = new VirtualClock(1_760_000_000_000L, 1_000_000L, 1_000_000L);
+        // El trabajo de un tick que no depende del framework: tiempo, texto y reglas
+        TimerScheduler scheduler = new TimerScheduler(clock, clock, entry -> {
+            long elapsed = entry.getElapsed(clock.elapsedRealtime());
+            sink += entry.formatter.formatElapsed(elapsed).length();
+            if (entry.rules != null && entry.rules.isDue(elapsed)) {
+                entry.rules.evaluate(elapsed, (rule, threshold) -> { });
+            }
+            return 1000;
+        });
+        for (int t = 0; t < 8; t++) {
+            TimerEntry entry = new TimerEntry("timer-" + t, 1001 + t);
+            entry.startTime = clock.wallTime() - t * 7 * MINUTE;
+            entry.anchor(clock.wallTime(), clock.elapsedRealtime(), 1);
+            entry.rules = TimerRules.of(8 * 60 * MINUTE, 0, 0, 0);
+            entry.rules.compile(entry.getElapsed(clock.elapsedRealtime()), 0);
+            scheduler.schedule(entry, t * 100);
+        }
+        // Una operación = un segundo virtual: 8 timers vencidos y rearmado del Runnable
+        double bytes = measure("TimerScheduler tick (8 timers)", i -> {
+            clock.advance(1000);
+            return scheduler.size();
+        });
+        // Solo asigna el String de cada cambio de minuto: 8 timers / 60 ticks
+        assertTrue(bytes < 16);
+    }
+}
@@ -0,0 +1,85 @@
+package com.meycagesal.nativetimer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NotificationRenderCacheTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private TimerEntry entry;
+    private NotificationRenderCache cache;
+
+    @Before
+    public void setUp() {
+        entry = new TimerEntry("default", 1001);
+        entry.startTime = 1_760_000_000_000L;
+        entry.anchor(entry.startTime, 10_000L, 1);
+        cache = new NotificationRenderCache();
+    }
+
+    private void bind() {
+        cache.bind(entry, 0xFF0045A5, "09 de octubre 10:13", entry.anchorRealtime);
+    }
+
+    @Test
+    public void emptyCacheIsInvalid() {
+        assertFalse(cache.isValidFor(entry));
+    }
+
+    @Test
+    public void boundCacheStaysValidAcrossTicks() {
+        bind();
+        // Los ticks solo cambian el tiempo transcurrido, que no forma parte de la caché
+        entry.getElapsed(10_000L + 5 * HOUR);
+        assertTrue(cache.isValidFor(entry));
+    }
+
+    @Test
+    public void titleOrColorChangeInvalidates() {
+        bind();
+        entry.title = "Otra jornada";
+        assertFalse(cache.isValidFor(entry));
+
+        bind();
+        entry.primaryColor = "#ff0000";
+        assertFalse(cache.isValidFor(entry));
+    }
+
+    @Test
+    public void pauseAndResumeInvalidate() {
+        bind();
+        entry.pause(10_000L + HOUR);
+        assertFalse(cache.isValidFor(entry));
+
+        bind();
+        entry.resume(10_000L + 2 * HOUR);
+        assertFalse(cache.isValidFor(entry));
+    }
+
+    @Test
+    public void crossedThresholdInvalidates() {
+        entry.rules = TimerRules.of(8 * HOUR, 0, 0, 0);
+        entry.rules.compile(0, 0);
+        bind();
+        assertTrue(cache.isValidFor(entry));
+
+        entry.rules.evaluate(8 * HOUR, (rule, threshold) -> { });
+        assertFalse(cache.isValidFor(entry));
+    }
+
+    @Test
+    public void progressMaxFollowsTargetRule() {
+        bind();
+        assertEquals(8 * 60, cache.progressMaxMinutes);
+
+        entry.rules = TimerRules.of(7 * HOUR + 30 * 60 * 1000L, 0, 0, 0);
+        entry.rules.compile(0, 0);
+        bind();
+        assertEquals(7 * 60 + 30, cache.progressMaxMinutes);
+    }
+}
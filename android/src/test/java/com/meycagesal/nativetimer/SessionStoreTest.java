@@ -0,0 +1,240 @@
+package com.meycagesal.nativetimer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Histórico de sesiones sobre un directorio temporal: agregados por día con sumas
+ * prefijas, recarga desde disco y exportación
+ */
+public class SessionStoreTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = SessionStore.DAY_MS;
+    // 2025-10-09 00:00 UTC: día local 20370 con la zona fijada a UTC
+    private static final long DAY_START = 20370 * DAY;
+    private static final int FIRST_DAY = 20370;
+
+    private TimeZone previousZone;
+    private File dir;
+    private File file;
+    private File legacyFile;
+
+    @Before
+    public void setUp() throws IOException {
+        previousZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        dir = Files.createTempDirectory("sessions").toFile();
+        file = new File(dir, "sessions.bin");
+        legacyFile = new File(dir, "legacy.bin");
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(previousZone);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private SessionStore open() {
+        return SessionStore.open(file, legacyFile);
+    }
+
+    private static void recordOnDay(SessionStore store, String id, int dayOffset, long activeMs) {
+        long start = DAY_START + dayOffset * DAY + 8 * HOUR;
+        store.record(id, start, start + activeMs + HOUR, activeMs, 1);
+    }
+
+    @Test
+    public void prefixSumsAnswerDayRanges() {
+        SessionStore store = open();
+        recordOnDay(store, "default", 0, 8 * HOUR);
+        recordOnDay(store, "default", 0, HOUR);
+        recordOnDay(store, "default", 1, 7 * HOUR);
+        recordOnDay(store, "default", 4, 6 * HOUR);
+
+        assertEquals(9 * HOUR, store.getActiveTime(FIRST_DAY, FIRST_DAY));
+        assertEquals(2, store.getSessionCount(FIRST_DAY, FIRST_DAY));
+        assertEquals(16 * HOUR, store.getActiveTime(FIRST_DAY, FIRST_DAY + 1));
+        assertEquals(22 * HOUR, store.getActiveTime(FIRST_DAY, FIRST_DAY + 6));
+        assertEquals(4, store.getSessionCount(FIRST_DAY - 10, FIRST_DAY + 10));
+        assertEquals(4, store.getSessionCount());
+    }
+
+    @Test
+    public void rangesWithoutSessionsAreEmpty() {
+        SessionStore store = open();
+        recordOnDay(store, "default", 0, 8 * HOUR);
+        recordOnDay(store, "default", 4, 6 * HOUR);
+
+        // Hueco entre días con sesiones, antes de la primera y después de la última
+        assertEquals(0, store.getActiveTime(FIRST_DAY + 1, FIRST_DAY + 3));
+        assertEquals(0, store.getSessionCount(FIRST_DAY - 5, FIRST_DAY - 1));
+        assertEquals(0, store.getActiveTime(FIRST_DAY + 5, FIRST_DAY + 30));
+        // Rango invertido
+        assertEquals(0, store.getActiveTime(FIRST_DAY + 4, FIRST_DAY));
+    }
+
+    @Test
+    public void outOfOrderDaysKeepPrefixesSorted() {
+        SessionStore store = open();
+        recordOnDay(store, "default", 5, 5 * HOUR);
+        recordOnDay(store, "default", 1, HOUR);
+        recordOnDay(store, "default", 3, 3 * HOUR);
+        recordOnDay(store, "default", 1, 2 * HOUR);
+        recordOnDay(store, "default", 0, 7 * HOUR);
+
+        assertEquals(7 * HOUR, store.getActiveTime(FIRST_DAY, FIRST_DAY));
+        assertEquals(3 * HOUR, store.getActiveTime(FIRST_DAY + 1, FIRST_DAY + 1));
+        assertEquals(2, store.getSessionCount(FIRST_DAY + 1, FIRST_DAY + 1));
+        assertEquals(6 * HOUR, store.getActiveTime(FIRST_DAY + 1, FIRST_DAY + 4));
+        assertEquals(18 * HOUR, store.getActiveTime(FIRST_DAY, FIRST_DAY + 5));
+    }
+
+    @Test
+    public void reloadRebuildsAggregates() {
+        SessionStore store = open();
+        for (int day = 0; day < 400; day++) {
+            recordOnDay(store, "default", day, HOUR + day);
+        }
+
+        SessionStore reloaded = open();
+        assertEquals(400, reloaded.getSessionCount());
+        assertEquals(store.getActiveTime(FIRST_DAY + 30, FIRST_DAY + 60),
+                reloaded.getActiveTime(FIRST_DAY + 30, FIRST_DAY + 60));
+        assertEquals(31 * HOUR + (30 + 60) * 31 / 2, reloaded.getActiveTime(FIRST_DAY + 30, FIRST_DAY + 60));
+    }
+
+    @Test
+    public void truncatedTrailingRecordIsDiscardedAndCut() throws IOException {
+        SessionStore store = open();
+        recordOnDay(store, "default", 0, 8 * HOUR);
+        recordOnDay(store, "default", 1, 7 * HOUR);
+        // Crash a mitad del tercer append
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[SessionStore.RECORD_SIZE / 2]);
+        }
+
+        SessionStore reloaded = open();
+        assertEquals(2, reloaded.getSessionCount());
+        assertEquals(2L * SessionStore.RECORD_SIZE, file.length());
+
+        // Los appends siguientes quedan alineados
+        recordOnDay(reloaded, "default", 2, 6 * HOUR);
+        SessionStore again = open();
+        assertEquals(3, again.getSessionCount());
+        assertEquals(6 * HOUR, again.getActiveTime(FIRST_DAY + 2, FIRST_DAY + 2));
+    }
+
+    @Test
+    public void longIdsAreCutOnCharacterBoundary() throws IOException {
+        SessionStore store = open();
+        // 62 bytes ASCII + "é" (2 bytes): el carácter no cabe entero en 63
+        String id = "x".repeat(62) + "é" + "tail";
+        recordOnDay(store, id, 0, HOUR);
+
+        File export = new File(dir, "export.ndjson");
+        store.export(export, true, FIRST_DAY, FIRST_DAY);
+        String json = new String(Files.readAllBytes(export.toPath()), StandardCharsets.UTF_8);
+        assertTrue(json, json.startsWith("{\"id\":\"" + "x".repeat(62) + "\","));
+        assertFalse(json.contains("�"));
+    }
+
+    @Test
+    public void idsSharingTwentyBytesStayDistinct() throws IOException {
+        SessionStore store = open();
+        recordOnDay(store, "project-alpha-frontend", 0, HOUR);
+        recordOnDay(store, "project-alpha-frontend-2", 0, HOUR);
+
+        File export = new File(dir, "export.csv");
+        assertEquals(2, store.export(export, false, FIRST_DAY, FIRST_DAY));
+        List<String> lines = Files.readAllLines(export.toPath(), StandardCharsets.UTF_8);
+        assertEquals("id,startTime,endTime,activeTime,pauseCount", lines.get(0));
+        assertTrue(lines.get(1).startsWith("project-alpha-frontend,"));
+        assertTrue(lines.get(2).startsWith("project-alpha-frontend-2,"));
+    }
+
+    @Test
+    public void completeUtf8LengthDropsPartialSequence() {
+        byte[] bytes = "a€😀".getBytes(StandardCharsets.UTF_8); // 1 + 3 + 4 bytes
+        assertEquals(8, SessionStore.completeUtf8Length(bytes, 8));
+        assertEquals(4, SessionStore.completeUtf8Length(bytes, 7));
+        assertEquals(4, SessionStore.completeUtf8Length(bytes, 5));
+        assertEquals(4, SessionStore.completeUtf8Length(bytes, 4));
+        assertEquals(1, SessionStore.completeUtf8Length(bytes, 3));
+        assertEquals(0, SessionStore.completeUtf8Length(bytes, 0));
+    }
+
+    @Test
+    public void exportFiltersByStartDayAndEscapesJson() throws IOException {
+        SessionStore store = open();
+        recordOnDay(store, "a\"b", 0, HOUR);
+        recordOnDay(store, "tab\there", 1, 2 * HOUR);
+        recordOnDay(store, "late", 2, 3 * HOUR);
+
+        File export = new File(dir, "export.ndjson");
+        assertEquals(2, store.export(export, true, FIRST_DAY, FIRST_DAY + 1));
+        List<String> lines = Files.readAllLines(export.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith("{\"id\":\"a\\\"b\","));
+        assertTrue(lines.get(1), lines.get(1).startsWith("{\"id\":\"tab\\u0009here\","));
+        assertTrue(lines.get(1), lines.get(1).endsWith(",\"activeTime\":" + 2 * HOUR + ",\"pauseCount\":1}"));
+    }
+
+    @Test
+    public void legacyFileIsMigrated() throws IOException {
+        // Formato anterior: 28 bytes de campos + id de 20 bytes con relleno, cortado a mitad de "é"
+        byte[] legacyId = ("x".repeat(19) + "é").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(48);
+        record.putLong(DAY_START + 8 * HOUR).putLong(DAY_START + 17 * HOUR).putLong(8 * HOUR).putInt(2);
+        record.put(legacyId, 0, 20);
+        try (FileOutputStream out = new FileOutputStream(legacyFile)) {
+            out.write(record.array());
+            out.write(record.array(), 0, 10); // Registro truncado al final
+        }
+
+        SessionStore store = open();
+        assertFalse(legacyFile.exists());
+        assertEquals(1, store.getSessionCount());
+        assertEquals(8 * HOUR, store.getActiveTime(FIRST_DAY, FIRST_DAY));
+
+        File export = new File(dir, "export.csv");
+        store.export(export, false, FIRST_DAY, FIRST_DAY);
+        List<String> lines = Files.readAllLines(export.toPath(), StandardCharsets.UTF_8);
+        assertEquals("x".repeat(19) + "," + (DAY_START + 8 * HOUR) + "," + (DAY_START + 17 * HOUR) + "," + 8 * HOUR + ",2",
+                lines.get(1));
+    }
+
+    @Test
+    public void exportSeesOnlyCompleteRecords() throws IOException {
+        SessionStore store = open();
+        recordOnDay(store, "default", 0, HOUR);
+        // Bytes sueltos detrás del último registro (un append en curso): no se exportan
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length());
+            raf.write(new byte[7]);
+        }
+        File export = new File(dir, "export.csv");
+        assertEquals(1, store.export(export, false, Integer.MIN_VALUE, Integer.MAX_VALUE - 1));
+    }
+}
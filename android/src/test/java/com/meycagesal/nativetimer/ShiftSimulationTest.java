@@ -0,0 +1,251 @@
+package com.meycagesal.nativetimer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.Manifest;
+import android.app.Application;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Looper;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.ProgressBar;
+import android.widget.RemoteViews;
+import android.widget.TextView;
+
+import com.getcapacitor.JSObject;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowNotificationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jornada de 8 h del servicio real con {@link VirtualClock}: arranque, pausa, reanudación y
+ * parada. Los comandos se aplican en el main Looper de Robolectric y los ticks al avanzar el
+ * reloj virtual, así que cada notificación, tick y evento del plugin es determinista.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ShiftSimulationTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long SLACK = 20; // BOUNDARY_SLACK_MS del servicio
+    private static final long WALL_START = 1_760_000_000_000L;
+    private static final int NOTIFICATION_ID = 1001;
+
+    private Application app;
+    private VirtualClock clock;
+    private RecordingPlugin plugin;
+    private ServiceController<NativeTimerService> controller;
+    private NativeTimerService service;
+    private ShadowNotificationManager notifications;
+
+    /**
+     * Plugin sin Bridge que guarda los eventos que emitiría a JS
+     */
+    private static final class RecordingPlugin extends NativeTimerPlugin {
+        final List<JSObject> updates = new ArrayList<>();
+        final List<JSObject> thresholds = new ArrayList<>();
+
+        @Override
+        protected boolean hasListeners(String eventName) {
+            return true;
+        }
+
+        @Override
+        protected void notifyListeners(String eventName, JSObject data) {
+            notifyListeners(eventName, data, false);
+        }
+
+        @Override
+        protected void notifyListeners(String eventName, JSObject data, boolean retainUntilConsumed) {
+            ("timerThreshold".equals(eventName) ? thresholds : updates).add(data);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        TimerMetrics.reset();
+        TimerStateStore.reset();
+        app = RuntimeEnvironment.getApplication();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        NotificationManager manager = (NotificationManager) app.getSystemService(Context.NOTIFICATION_SERVICE);
+        // Canal que en la app crea Capacitor
+        manager.createNotificationChannel(new NotificationChannel("work_session_channel", "Jornada",
+                NotificationManager.IMPORTANCE_LOW));
+        notifications = shadowOf(manager);
+
+        clock = new VirtualClock(WALL_START, 5_000_000L, 1_000_000L);
+        NativeTimerService.setClock(clock, clock, Looper.getMainLooper());
+        plugin = new RecordingPlugin();
+        NativeTimerPlugin.setLiveInstance(plugin);
+
+        controller = Robolectric.buildService(NativeTimerService.class).create();
+        service = controller.get();
+        idle(); // Outbox y journal
+    }
+
+    @After
+    public void tearDown() {
+        NativeTimerService.setClock(null, null, null);
+        NativeTimerPlugin.setLiveInstance(null);
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    /**
+     * Aplica los comandos encolados y ejecuta el tick inmediato que programan
+     */
+    private void applyCommands() {
+        idle();
+        clock.advance(0);
+    }
+
+    private void startShift() {
+        Intent intent = new Intent(app, NativeTimerService.class);
+        TimerStartRequest request = new TimerStartRequest();
+        request.startTime = clock.wallTime();
+        request.title = "Jornada";
+        request.primaryColor = "#0045a5";
+        request.writeTo(intent);
+        controller.withIntent(intent).startCommand(0, 1);
+        applyCommands();
+    }
+
+    private Notification notification() {
+        Notification notification = notifications.getNotification(NOTIFICATION_ID);
+        assertNotNull(notification);
+        return notification;
+    }
+
+    private static String title(Notification notification) {
+        return notification.extras.getCharSequence(Notification.EXTRA_TITLE).toString();
+    }
+
+    private View inflate(RemoteViews views) {
+        return views.apply(app, new FrameLayout(app));
+    }
+
+    private String compactText() {
+        return ((TextView) inflate(notification().contentView).findViewById(R.id.timer_compact)).getText().toString();
+    }
+
+    private ProgressBar progressBar() {
+        return (ProgressBar) inflate(notification().bigContentView).findViewById(R.id.progress_bar);
+    }
+
+    private JSObject lastUpdate() {
+        return plugin.updates.get(plugin.updates.size() - 1);
+    }
+
+    @Test
+    public void eightHourShiftWithPause() throws JSONException {
+        startShift();
+        assertTrue(NativeTimerService.isRunning());
+        assertEquals(NOTIFICATION_ID, shadowOf(service).getLastForegroundNotificationId());
+        assertEquals("⏰ JORNADA ACTIVA", title(shadowOf(service).getLastForegroundNotification()));
+        assertEquals(1, TimerMetrics.ticks.get());
+        // El tick inmediato no repite la notificación que acaba de publicar startForeground
+        assertEquals(0, TimerMetrics.postedNotifications.get());
+        assertEquals(1, TimerMetrics.skippedNotifications.get());
+        assertEquals(1, plugin.updates.size());
+        assertEquals("0 min", lastUpdate().getString("formattedTime"));
+
+        // 4 h y 20 s de trabajo: un tick y un notify por cambio de minuto
+        clock.advance(4 * HOUR + 20_000);
+        assertEquals(241, TimerMetrics.ticks.get());
+        assertEquals(240, TimerMetrics.postedNotifications.get());
+        assertEquals(241, plugin.updates.size());
+        assertEquals("4 h", lastUpdate().getString("formattedTime"));
+        assertEquals("default", lastUpdate().getString("id"));
+        assertEquals("⏰ JORNADA ACTIVA", title(notification()));
+        assertEquals("4 h", compactText());
+        assertEquals(480, progressBar().getMax());
+        assertEquals(240, progressBar().getProgress());
+
+        // Pausa: la notificación cambia de estado y los ticks se detienen
+        service.pauseTimer(null);
+        applyCommands();
+        assertEquals("⏸️ JORNADA EN PAUSA", title(notification()));
+        assertEquals(242, TimerMetrics.ticks.get());
+        assertEquals(241, TimerMetrics.postedNotifications.get());
+        // El texto visible no cambió ("4 h"): sin evento para JS
+        assertEquals(241, plugin.updates.size());
+        assertTrue(TimerStateStore.get(service).findTimer("default").paused);
+
+        clock.advance(30 * MINUTE);
+        assertEquals(242, TimerMetrics.ticks.get());
+        assertEquals(241, TimerMetrics.postedNotifications.get());
+        assertEquals(4 * HOUR + 20_000, service.getElapsedTime(null));
+        assertEquals(0, clock.pendingCount());
+
+        // Reanudar: los ticks vuelven a caer en los cambios de minuto del tiempo activo
+        service.resumeTimer(null);
+        applyCommands();
+        assertEquals("⏰ JORNADA ACTIVA", title(notification()));
+        assertEquals(243, TimerMetrics.ticks.get());
+        assertEquals(242, TimerMetrics.postedNotifications.get());
+        assertFalse(TimerStateStore.get(service).findTimer("default").paused);
+
+        int resumedAt = plugin.updates.size();
+        clock.advance(40_000 + SLACK - 1);
+        assertEquals(resumedAt, plugin.updates.size());
+        clock.advance(1);
+        assertEquals(resumedAt + 1, plugin.updates.size());
+        assertEquals(4 * HOUR + MINUTE + SLACK, lastUpdate().getLong("elapsedTime"));
+        assertEquals("4 h 1 min", compactText());
+
+        // Hasta completar 8 h de trabajo efectivo
+        clock.advance(4 * HOUR - MINUTE);
+        assertEquals(483, TimerMetrics.ticks.get());
+        assertEquals(482, TimerMetrics.postedNotifications.get());
+        assertEquals(481, plugin.updates.size());
+        for (JSObject update : plugin.updates.subList(resumedAt, plugin.updates.size())) {
+            assertEquals(SLACK, update.getLong("elapsedTime") % MINUTE);
+        }
+        assertEquals("8 h", lastUpdate().getString("formattedTime"));
+        assertEquals("8 h", compactText());
+        assertEquals(480, progressBar().getProgress());
+        assertEquals(8 * HOUR + SLACK, service.getElapsedTime(null));
+        assertTrue(plugin.thresholds.isEmpty());
+
+        // Parada: fuera del foreground, sin ticks pendientes y sin timers publicados
+        service.stopTimer(null);
+        idle();
+        assertFalse(NativeTimerService.isRunning());
+        assertTrue(shadowOf(service).isStoppedBySelf());
+        assertNull(notifications.getNotification(NOTIFICATION_ID));
+        assertEquals(0, clock.pendingCount());
+        assertEquals(0, TimerStateStore.get(service).getTimerCount());
+
+        clock.advance(HOUR);
+        assertEquals(483, TimerMetrics.ticks.get());
+        assertEquals(481, plugin.updates.size());
+
+        controller.destroy();
+        idle();
+        assertFalse(service.isAlive());
+    }
+}
@@ -0,0 +1,127 @@
+package com.meycagesal.nativetimer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+public class TimeFormatterTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    /**
+     * El formateo anterior de NativeTimerService.formatTime, tal cual (con dígitos ASCII)
+     */
+    private static String legacyFormatTime(long timeInMillis) {
+        long totalSeconds = timeInMillis / 1000;
+        long hours = totalSeconds / 3600;
+        long minutes = (totalSeconds % 3600) / 60;
+
+        if (hours > 0) {
+            if (minutes > 0) {
+                return String.format(Locale.ROOT, "%d h %d min", hours, minutes);
+            } else {
+                return String.format(Locale.ROOT, "%d h", hours);
+            }
+        } else {
+            if (minutes > 0) {
+                return String.format(Locale.ROOT, "%d min", minutes);
+            } else {
+                return "0 min";
+            }
+        }
+    }
+
+    @Test
+    public void formatElapsedMatchesLegacyFormat() {
+        TimeFormatter sequential = new TimeFormatter();
+        for (long ms = 0; ms <= 50 * HOUR; ms += 29_999) {
+            assertEquals("ms=" + ms, legacyFormatTime(ms), sequential.formatElapsed(ms));
+        }
+    }
+
+    @Test
+    public void formatElapsedMatchesLegacyFormatAtBoundaries() {
+        long[] boundaries = {
+            0, 999, 59_999, MINUTE, MINUTE + 1, HOUR - 1, HOUR, HOUR + MINUTE - 1, HOUR + MINUTE,
+            8 * HOUR, 8 * HOUR + 59 * MINUTE, 100 * HOUR + 1, -1, -MINUTE
+        };
+        for (long ms : boundaries) {
+            // Instancia nueva: sin depender de la caché del minuto anterior
+            assertEquals("ms=" + ms, legacyFormatTime(ms), new TimeFormatter().formatElapsed(ms));
+        }
+    }
+
+    @Test
+    public void formatElapsedReusesStringWithinMinute() {
+        TimeFormatter formatter = new TimeFormatter();
+        String first = formatter.formatElapsed(2 * HOUR + 5 * MINUTE);
+        assertSame(first, formatter.formatElapsed(2 * HOUR + 5 * MINUTE + 59_999));
+        assertEquals("2 h 6 min", formatter.formatElapsed(2 * HOUR + 6 * MINUTE));
+    }
+
+    @Test
+    public void formatElapsedSteadyStateDoesNotAllocate() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+
+        TimeFormatter formatter = new TimeFormatter();
+        long base = 3 * HOUR + 17 * MINUTE;
+        // Calentar: primera composición del minuto y JIT
+        for (int i = 0; i < 20_000; i++) {
+            formatter.formatElapsed(base + (i % 60) * 1000);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        int length = 0;
+        for (int i = 0; i < 100_000; i++) {
+            length += formatter.formatElapsed(base + (i % 60) * 1000).length();
+        }
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(100_000L * "3 h 17 min".length(), length);
+        // Con una sola asignación por llamada serían varios MB; el margen cubre la medición
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void formatStartTimeMatchesLegacyFormat() {
+        @SuppressWarnings("deprecation")
+        SimpleDateFormat legacy = new SimpleDateFormat("dd 'de' MMMM HH:mm", new Locale("es", "ES"));
+        TimeFormatter formatter = new TimeFormatter();
+        long[] timestamps = {0L, 1_700_000_000_000L, 1_735_689_599_000L, 1_760_000_000_000L};
+        for (long timestamp : timestamps) {
+            assertEquals(legacy.format(new Date(timestamp)), formatter.formatStartTime(timestamp, null, null));
+        }
+    }
+
+    @Test
+    public void formatStartTimeHonorsPatternAndLocale() {
+        long timestamp = 1_760_000_000_000L;
+        TimeFormatter formatter = new TimeFormatter();
+        String english = new SimpleDateFormat("MMM d, HH:mm", Locale.US).format(new Date(timestamp));
+        assertEquals(english, formatter.formatStartTime(timestamp, "MMM d, HH:mm", "en-US"));
+        // Cambiar de configuración no arrastra el formato anterior
+        String spanish = new SimpleDateFormat(TimeFormatter.DEFAULT_START_PATTERN, Locale.forLanguageTag("es-ES"))
+                .format(new Date(timestamp));
+        assertEquals(spanish, formatter.formatStartTime(timestamp, null, null));
+    }
+
+    @Test
+    public void formatStartTimeFallsBackOnInvalidPattern() {
+        long timestamp = 1_760_000_000_000L;
+        String fallback = new SimpleDateFormat("dd/MM HH:mm", Locale.getDefault()).format(new Date(timestamp));
+        assertEquals(fallback, new TimeFormatter().formatStartTime(timestamp, "'sin cerrar", "es-ES"));
+    }
+}
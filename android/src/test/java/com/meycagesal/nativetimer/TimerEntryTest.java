@@ -0,0 +1,64 @@
+package com.meycagesal.nativetimer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Ancla monótona de TimerEntry y detección de reinicio sin BOOT_COUNT
+ */
+public class TimerEntryTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long TOLERANCE = MINUTE;
+    private static final long WALL_START = 1_760_000_000_000L;
+
+    private TimerEntry entry;
+
+    @Before
+    public void setUp() {
+        entry = new TimerEntry("default", 1001);
+        entry.startTime = WALL_START;
+        // Arrancado 2 h después del boot
+        entry.anchor(WALL_START, 120 * MINUTE, -1);
+    }
+
+    @Test
+    public void sameBootKeepsAnchor() {
+        assertTrue(entry.isAnchoredInThisBoot(WALL_START + 90 * MINUTE, 210 * MINUTE, TOLERANCE));
+    }
+
+    @Test
+    public void ntpAdjustmentWithinToleranceKeepsAnchor() {
+        // El reloj de pared se corrigió 3 s hacia atrás en el mismo arranque
+        assertTrue(entry.isAnchoredInThisBoot(WALL_START + 90 * MINUTE - 3000, 210 * MINUTE, TOLERANCE));
+        assertEquals(90 * MINUTE, entry.getElapsed(210 * MINUTE));
+    }
+
+    @Test
+    public void rebootIsDetected() {
+        // Reinicio: elapsedRealtime vuelve a empezar, el instante de arranque salta
+        assertFalse(entry.isAnchoredInThisBoot(WALL_START + 90 * MINUTE, 5 * MINUTE, TOLERANCE));
+    }
+
+    @Test
+    public void segmentBoundInTheFutureMeansReboot() {
+        entry.pause(150 * MINUTE);
+        entry.resume(160 * MINUTE);
+        // Mismo instante de arranque aparente, pero el último límite de segmento aún no ha llegado
+        assertFalse(entry.isAnchoredInThisBoot(WALL_START + 30 * MINUTE, 150 * MINUTE, TOLERANCE));
+    }
+
+    @Test
+    public void rebaseShiftsSegments() {
+        entry.pause(150 * MINUTE);
+        entry.resume(160 * MINUTE);
+        long before = entry.getElapsed(200 * MINUTE);
+        entry.rebase(entry.anchorRealtime - 100 * MINUTE, 7);
+        assertEquals(before, entry.getElapsed(100 * MINUTE));
+        assertEquals(7, entry.anchorBootCount);
+    }
+}
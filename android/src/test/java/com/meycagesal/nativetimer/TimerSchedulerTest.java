@@ -0,0 +1,134 @@
+package com.meycagesal.nativetimer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * TimerScheduler con reloj virtual: una jornada entera se simula en milisegundos y cada
+ * tick se ejecuta exactamente en su instante.
+ */
+public class TimerSchedulerTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long WALL_START = 1_760_000_000_000L;
+
+    private VirtualClock clock;
+    private final List<String> fired = new ArrayList<>();
+    private final List<Long> firedAt = new ArrayList<>();
+    // Retardo que devuelve el listener por timer (sin entrada = -1, no reprogramar)
+    private final Map<String, Long> nextDelays = new HashMap<>();
+    private TimerScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        clock = new VirtualClock(WALL_START, 5_000_000L, 1_000_000L);
+        scheduler = new TimerScheduler(clock, clock, entry -> {
+            fired.add(entry.id);
+            firedAt.add(clock.uptime());
+            Long delay = nextDelays.get(entry.id);
+            return delay != null ? delay : -1;
+        });
+    }
+
+    private TimerEntry newEntry(String id) {
+        TimerEntry entry = new TimerEntry(id, 1001 + fired.size());
+        entry.startTime = clock.wallTime();
+        entry.anchor(clock.wallTime(), clock.elapsedRealtime(), 1);
+        return entry;
+    }
+
+    @Test
+    public void ticksFireInDueOrder() {
+        scheduler.schedule(newEntry("a"), 300);
+        scheduler.schedule(newEntry("b"), 100);
+        scheduler.schedule(newEntry("c"), 200);
+
+        clock.advance(150);
+        assertEquals(List.of("b"), fired);
+        clock.advance(1000);
+        assertEquals(List.of("b", "c", "a"), fired);
+        assertEquals(List.of(1_000_100L, 1_000_200L, 1_000_300L), firedAt);
+        assertEquals(0, scheduler.size());
+        assertEquals(0, clock.pendingCount());
+    }
+
+    @Test
+    public void listenerDelayReschedulesTimer() {
+        nextDelays.put("a", 1000L);
+        scheduler.schedule(newEntry("a"), 0);
+
+        clock.advance(3500);
+        assertEquals(List.of(1_000_000L, 1_001_000L, 1_002_000L, 1_003_000L), firedAt);
+        assertEquals(1, scheduler.size());
+    }
+
+    @Test
+    public void singleRunnableArmedForManyTimers() {
+        for (int i = 0; i < 20; i++) {
+            scheduler.schedule(newEntry("t" + i), 1000 + i);
+        }
+        assertEquals(1, clock.pendingCount());
+    }
+
+    @Test
+    public void rescheduleAndCancelUpdateHeap() {
+        TimerEntry a = newEntry("a");
+        TimerEntry b = newEntry("b");
+        TimerEntry c = newEntry("c");
+        scheduler.schedule(a, 100);
+        scheduler.schedule(b, 200);
+        scheduler.schedule(c, 300);
+
+        scheduler.schedule(c, 50); // Adelantar
+        scheduler.schedule(a, 400); // Retrasar
+        scheduler.cancel(b);
+
+        clock.advance(1000);
+        assertEquals(List.of("c", "a"), fired);
+
+        scheduler.schedule(a, 100);
+        scheduler.cancelAll();
+        assertEquals(0, clock.pendingCount());
+        clock.advance(1000);
+        assertEquals(List.of("c", "a"), fired);
+    }
+
+    @Test
+    public void multiTimerHeapOrder() {
+        Random random = new Random(42);
+        Map<String, Long> expectedDue = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            long delay = random.nextInt(10_000);
+            String id = "t" + i;
+            expectedDue.put(id, clock.uptime() + delay);
+            scheduler.schedule(newEntry(id), delay);
+        }
+
+        clock.advance(10_000);
+        assertEquals(200, fired.size());
+        for (int i = 0; i < fired.size(); i++) {
+            assertEquals(fired.get(i), (long) expectedDue.get(fired.get(i)), (long) firedAt.get(i));
+            if (i > 0) {
+                assertTrue(firedAt.get(i - 1) <= firedAt.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void wallClockJumpDoesNotMoveElapsed() {
+        TimerEntry entry = newEntry("default");
+        clock.advance(30 * MINUTE);
+        clock.setWallTime(clock.wallTime() - 2 * 60 * MINUTE); // El usuario retrasa el reloj 2 h
+        assertEquals(30 * MINUTE, entry.getElapsed(clock.elapsedRealtime()));
+        assertEquals(-2 * 60 * MINUTE, entry.getWallClockSkew(clock.wallTime(), clock.elapsedRealtime()));
+    }
+}
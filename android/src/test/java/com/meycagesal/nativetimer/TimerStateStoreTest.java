@@ -0,0 +1,124 @@
+package com.meycagesal.nativetimer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Publicación y lectura del estado a través de la copia en disco, como entre el proceso
+ * del servicio y el de un widget
+ */
+public class TimerStateStoreTest {
+
+    private static final long START = 1_760_000_000_000L;
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        TimerStateStore.reset();
+        dir = Files.createTempDirectory("state").toFile();
+        file = new File(dir, "state.bin");
+    }
+
+    @After
+    public void tearDown() {
+        TimerStateStore.reset();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static TimerState.Timer timer(String title, boolean paused) {
+        return new TimerState.Timer("default", title, "#0045a5", START, paused, TimerRules.TARGET,
+                START + 1000, paused ? 30 * 60 * 1000L : 0);
+    }
+
+    @Test
+    public void saveAndLoadRoundTrip() {
+        TimerState.Timer second = new TimerState.Timer("extra", "Guardia", "#ff8800", START + 5000, false, 0, START + 6000, 0);
+        TimerState state = new TimerState(42, new TimerState.Timer[] {timer("Jornada ñ ☕", true), second});
+        TimerStateStore.save(file, state);
+
+        TimerState loaded = TimerStateStore.load(file);
+        assertEquals(42, loaded.version);
+        assertEquals(2, loaded.getTimerCount());
+        assertTrue(loaded.sameContentAs(state));
+        TimerState.Timer first = loaded.getTimer(0);
+        assertEquals("Jornada ñ ☕", first.title);
+        assertTrue(first.paused);
+        assertEquals(TimerRules.TARGET, first.crossedRules);
+        assertEquals(30 * 60 * 1000L, first.getElapsed(START + 99_000_000L));
+        assertEquals("Guardia", loaded.findTimer("extra").title);
+        assertEquals(START + 6000, loaded.findTimer("extra").chronometerBase);
+    }
+
+    @Test
+    public void missingFileLoadsEmpty() {
+        assertSame(TimerState.EMPTY, TimerStateStore.load(file));
+    }
+
+    @Test
+    public void publishSkipsUnchangedContent() {
+        TimerState first = TimerStateStore.publish(file, new TimerState.Timer[] {timer("Jornada", false)});
+        assertNotNull(first);
+        assertEquals(1, first.version);
+        assertNull(TimerStateStore.publish(file, new TimerState.Timer[] {timer("Jornada", false)}));
+        TimerState second = TimerStateStore.publish(file, new TimerState.Timer[] {timer("Jornada", true)});
+        assertEquals(2, second.version);
+        assertEquals(2, TimerStateStore.load(file).version);
+    }
+
+    @Test
+    public void publishContinuesVersionFromDisk() {
+        TimerStateStore.save(file, new TimerState(7, new TimerState.Timer[0]));
+        TimerState next = TimerStateStore.publish(file, new TimerState.Timer[] {timer("Jornada", false)});
+        assertEquals(8, next.version);
+    }
+
+    @Test
+    public void readerInAnotherProcessSeesLaterPublishes() {
+        // Lector (widget): primera lectura desde disco
+        TimerStateStore.save(file, new TimerState(3, new TimerState.Timer[] {timer("Jornada", false)}));
+        file.setLastModified(START);
+        assertEquals(3, TimerStateStore.read(file).version);
+
+        // Sin cambios en disco se reutiliza la foto en memoria
+        TimerState cached = TimerStateStore.read(file);
+        assertEquals(3, cached.version);
+        assertSame(cached, TimerStateStore.read(file));
+
+        // El servicio (otro proceso) publica una versión nueva
+        TimerStateStore.save(file, new TimerState(4, new TimerState.Timer[] {timer("Jornada", true)}));
+        file.setLastModified(START + 2000);
+        TimerState refreshed = TimerStateStore.read(file);
+        assertEquals(4, refreshed.version);
+        assertTrue(refreshed.getTimer(0).paused);
+    }
+
+    @Test
+    public void readerNeverGoesBackToAnOlderVersion() {
+        TimerStateStore.save(file, new TimerState(5, new TimerState.Timer[0]));
+        file.setLastModified(START);
+        assertEquals(5, TimerStateStore.read(file).version);
+
+        TimerStateStore.save(file, new TimerState(4, new TimerState.Timer[0]));
+        file.setLastModified(START + 2000);
+        assertEquals(5, TimerStateStore.read(file).version);
+    }
+}
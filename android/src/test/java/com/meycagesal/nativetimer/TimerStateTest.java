@@ -0,0 +1,46 @@
+package com.meycagesal.nativetimer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TimerStateTest {
+
+    private static final long START = 1_760_000_000_000L;
+
+    private static TimerState.Timer timer(boolean paused, long chronometerBase, long pausedElapsed) {
+        return new TimerState.Timer("default", "Jornada", "#0045a5", START, paused, 0, chronometerBase, pausedElapsed);
+    }
+
+    private static TimerState state(TimerState.Timer timer) {
+        return new TimerState(1, new TimerState.Timer[] {timer});
+    }
+
+    @Test
+    public void pausedTimerIgnoresBaseDrift() {
+        // En pausa la base se deriva del reloj de pared: una hora después es distinta pero nada visible cambió
+        TimerState before = state(timer(true, START, 30 * 60 * 1000L));
+        TimerState after = state(timer(true, START + 60 * 60 * 1000L, 30 * 60 * 1000L));
+        assertTrue(after.sameContentAs(before));
+    }
+
+    @Test
+    public void pausedTimerComparesFrozenElapsed() {
+        TimerState before = state(timer(true, START, 30 * 60 * 1000L));
+        TimerState after = state(timer(true, START, 31 * 60 * 1000L));
+        assertFalse(after.sameContentAs(before));
+    }
+
+    @Test
+    public void runningTimerToleratesSmallBaseJitter() {
+        TimerState before = state(timer(false, START, 0));
+        assertTrue(state(timer(false, START + 400, 0)).sameContentAs(before));
+        assertFalse(state(timer(false, START + 5000, 0)).sameContentAs(before));
+    }
+
+    @Test
+    public void pauseChangesContent() {
+        assertFalse(state(timer(true, START, 0)).sameContentAs(state(timer(false, START, 0))));
+    }
+}
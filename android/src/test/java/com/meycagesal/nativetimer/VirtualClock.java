@@ -0,0 +1,112 @@
+package com.meycagesal.nativetimer;
+
+import java.util.Arrays;
+
+/**
+ * Reloj virtual para tests y benchmarks en la JVM: implementa {@link TimerClock} y hace de
+ * {@link TickScheduler} manual. Los tres relojes avanzan juntos con {@link #advance}, que
+ * ejecuta en orden los Runnables cuyo instante ya ha llegado.
+ */
+final class VirtualClock implements TimerClock, TickScheduler {
+
+    private long wall;
+    private long realtime;
+    private long uptime;
+
+    // Cola ordenada por instante, en arrays para no asignar por tick (se usa en benchmarks)
+    private Runnable[] runnables = new Runnable[8];
+    private long[] times = new long[8];
+    private int count = 0;
+
+    VirtualClock(long wallStart, long realtimeStart, long uptimeStart) {
+        this.wall = wallStart;
+        this.realtime = realtimeStart;
+        this.uptime = uptimeStart;
+    }
+
+    @Override
+    public long wallTime() {
+        return wall;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return realtime;
+    }
+
+    @Override
+    public long uptime() {
+        return uptime;
+    }
+
+    @Override
+    public void postAtTime(Runnable runnable, long at) {
+        if (count == times.length) {
+            times = Arrays.copyOf(times, count * 2);
+            runnables = Arrays.copyOf(runnables, count * 2);
+        }
+        // Orden por instante; a igual instante, FIFO como un Handler
+        int i = count;
+        while (i > 0 && times[i - 1] > at) {
+            times[i] = times[i - 1];
+            runnables[i] = runnables[i - 1];
+            i--;
+        }
+        times[i] = at;
+        runnables[i] = runnable;
+        count++;
+    }
+
+    @Override
+    public void remove(Runnable runnable) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (runnables[i] != runnable) {
+                times[kept] = times[i];
+                runnables[kept] = runnables[i];
+                kept++;
+            }
+        }
+        for (int i = kept; i < count; i++) {
+            runnables[i] = null;
+        }
+        count = kept;
+    }
+
+    /**
+     * Avanza los relojes ms milisegundos ejecutando lo que venza por el camino, cada
+     * Runnable con el reloj en su instante exacto
+     */
+    void advance(long ms) {
+        long target = uptime + ms;
+        while (count > 0 && times[0] <= target) {
+            long at = Math.max(times[0], uptime);
+            Runnable runnable = runnables[0];
+            count--;
+            System.arraycopy(times, 1, times, 0, count);
+            System.arraycopy(runnables, 1, runnables, 0, count);
+            runnables[count] = null;
+            moveTo(at);
+            runnable.run();
+        }
+        moveTo(target);
+    }
+
+    /**
+     * Cambio del reloj de pared (usuario o NTP): los relojes monótonos no se mueven
+     */
+    void setWallTime(long wallTime) {
+        wall = wallTime;
+    }
+
+    int pendingCount() {
+        return count;
+    }
+
+    private void moveTo(long at) {
+        long delta = at - uptime;
+        wall += delta;
+        realtime += delta;
+        uptime = at;
+    }
+}
@@ -1,23 +1,166 @@
+export interface TimerInfo {
+  id: string;
+  title: string;
+  startTime: number;
+  elapsedTime: number;
+  primaryColor: string;
+  /** Android: true si el timer está en pausa (elapsedTime congelado) */
+  paused?: boolean;
+  /** Android: desfase del reloj del dispositivo desde el inicio (ms, positivo = adelantado) */
+  wallClockSkew?: number;
+}
+
+export interface SessionSummary {
+  /** Tiempo activo de las sesiones en el rango pedido (ms) */
+  activeTime: number;
+  sessionCount: number;
+  /** Tiempo activo de hoy (ms) */
+  today: number;
+  /** Tiempo activo de la semana actual, de lunes a domingo (ms) */
+  thisWeek: number;
+}
+
+export interface SyncStatus {
+  /** Eventos pendientes de envío */
+  queueDepth: number;
+  /** Duración del último POST (ms), -1 si aún no hubo ninguno */
+  lastFlushLatencyMs: number;
+  /** Último envío correcto (epoch ms), 0 si ninguno */
+  lastSuccessAt: number;
+  consecutiveFailures: number;
+  lastError?: string;
+  /** Eventos descartados: los más antiguos por el tope de la cola (2000) y los lotes rechazados con 400/422 */
+  droppedEvents: number;
+  /** El backend respondió 401/403: los eventos se conservan y no se envía nada hasta el próximo configureSync */
+  awaitingCredentials: boolean;
+}
+
+export interface LatencyStats {
+  count: number;
+  /** Percentiles aproximados en microsegundos */
+  p50: number;
+  p90: number;
+  p99: number;
+  max: number;
+}
+
+export interface TimerMetrics {
+  ticks: number;
+  posted: number;
+  skipped: number;
+  dismissals: number;
+  restarts: number;
+  /** updateNotification fusionados con uno aún pendiente (gana el último título) */
+  coalesced: number;
+  /** notify aplazados por el límite de frecuencia de Android (~5/s); nunca se pierden */
+  rateLimited: number;
+  /** Duración completa del tick */
+  tick: LatencyStats;
+  /** Construcción de la notificación (RemoteViews + build) */
+  render: LatencyStats;
+  /** IPC de notify/startForeground */
+  notify: LatencyStats;
+  /** startTimer → startForeground con la notificación mínima (arranque en frío) */
+  startup: LatencyStats;
+  /** startTimer → notificación completa publicada */
+  startupRich: LatencyStats;
+}
+
+/** Umbrales de jornada en tiempo activo (ms, las pausas no cuentan) */
+export interface WorkdayRules {
+  /** Duración objetivo; también es el máximo de la barra de progreso (por defecto 8 h) */
+  target?: number;
+  /** Tiempo trabajado sin pausa tras el que se exige un descanso (una pausa lo reinicia) */
+  breakRequiredAfter?: number;
+  overtimeWarning?: number;
+  hardCap?: number;
+}
+
+export interface TimerThresholdEvent {
+  id: string;
+  rule: 'target' | 'breakRequired' | 'overtimeWarning' | 'hardCap';
+  /** Tiempo activo del umbral (ms) */
+  threshold: number;
+  elapsedTime: number;
+}
+
+export interface TimerSegment {
+  /** Inicio del segmento de actividad (epoch ms) */
+  start: number;
+  /** Fin del segmento; ausente si el timer sigue corriendo */
+  end?: number;
+}
+
+export interface TimerSnapshot {
+  isRunning: boolean;
+  appInForeground: boolean;
+  timers: (TimerInfo & { notificationDismissed: boolean; segments: TimerSegment[] })[];
+  metrics: {
+    ticks: number;
+    posted: number;
+    skipped: number;
+    tick: LatencyStats;
+  };
+}
+
+export type TimerCommand =
+  | {
+      type: 'start';
+      id?: string;
+      startTime?: number;
+      title?: string;
+      body?: string;
+      primaryColor?: string;
+      locale?: string;
+      startTimePattern?: string;
+      rules?: WorkdayRules;
+    }
+  | { type: 'stop'; id?: string }
+  | { type: 'pause'; id?: string }
+  | { type: 'resume'; id?: string }
+  | { type: 'updateTitle'; id?: string; title: string }
+  | { type: 'setForeground'; inForeground: boolean }
+  | { type: 'resetNotificationState' };
+
 export interface NativeTimerPlugin {
   /**
    * Inicia el timer nativo con foreground service (Android) o Live Activity (iOS)
    */
   startTimer(options: {
+    /** Identificador del timer (por defecto 'default'). Permite varios timers a la vez en Android */
+    id?: string;
     startTime: number;
     title: string;
     body: string;
     primaryColor?: string;
+    /** Android: locale BCP 47 de la fecha de inicio (por defecto 'es-ES') */
+    locale?: string;
+    /** Android: patrón de la fecha de inicio (por defecto "dd 'de' MMMM HH:mm") */
+    startTimePattern?: string;
+    /** Android: umbrales de jornada que emiten 'timerThreshold' y cambian el estado de la notificación */
+    rules?: WorkdayRules;
   }): Promise<{ success: boolean }>;
 
   /**
-   * Detiene el timer nativo
+   * Detiene el timer nativo. Con `id` detiene solo ese timer; sin `id` detiene todos
+   */
+  stopTimer(options?: { id?: string }): Promise<{ success: boolean }>;
+
+  /**
+   * Android: pausa el timer sin detener el foreground service (la notificación muestra el valor congelado)
+   */
+  pauseTimer(options?: { id?: string }): Promise<{ success: boolean }>;
+
+  /**
+   * Android: reanuda un timer pausado; el tiempo en pausa no cuenta en elapsedTime
    */
-  stopTimer(): Promise<{ success: boolean }>;
+  resumeTimer(options?: { id?: string }): Promise<{ success: boolean }>;
 
   /**
    * Actualiza la notificación del timer (Android) o Live Activity (iOS)
    */
   updateNotification(options: {
+    id?: string;
     title: string;
     body: string;
   }): Promise<{ success: boolean }>;
@@ -30,7 +173,58 @@ export interface NativeTimerPlugin {
   /**
    * Obtiene el tiempo transcurrido desde el inicio
    */
-  getElapsedTime(): Promise<{ elapsedTime: number }>;
+  getElapsedTime(options?: { id?: string }): Promise<{ elapsedTime: number }>;
+
+  /**
+   * Lista los timers activos
+   */
+  listTimers(): Promise<{ timers: TimerInfo[] }>;
+
+  /**
+   * Android: estado completo (timers, segmentos, flags y métricas del tick) en una sola llamada al bridge
+   */
+  getTimerSnapshot(): Promise<TimerSnapshot>;
+
+  /**
+   * Android: aplica varios comandos en un único viaje por el bridge, sin ticks intercalados.
+   * El lote se valida entero antes de aplicar nada; con `snapshot: true` devuelve el estado resultante.
+   * Los comandos de timers requieren el servicio arrancado (el arranque en frío sigue siendo startTimer)
+   */
+  applyCommands(options: {
+    commands: TimerCommand[];
+    snapshot?: boolean;
+  }): Promise<{ success: boolean; error?: string; index?: number } & Partial<TimerSnapshot>>;
+
+  /**
+   * Android: resumen del histórico local de sesiones terminadas (tiempo activo en ms).
+   * Sin `from`/`to` se usa el día de hoy; el tiempo de cada sesión cuenta en el día en que empezó
+   */
+  getSessionSummary(options?: { from?: number; to?: number }): Promise<SessionSummary>;
+
+  /**
+   * Android: exporta el histórico local a un fichero CSV o NDJSON en el almacenamiento de la app.
+   * Los registros no pasan por el bridge: solo se devuelve la ruta y el nº de filas
+   */
+  exportSessions(options?: {
+    format?: 'csv' | 'ndjson';
+    from?: number;
+    to?: number;
+  }): Promise<{ success: boolean; path?: string; rows?: number; error?: string }>;
+
+  /**
+   * Android: configura el endpoint al que se envían por lotes los eventos de fichaje
+   * (start/stop/pause/resume) guardados en el outbox nativo. `endpoint` null desactiva el envío
+   */
+  configureSync(options: {
+    endpoint: string | null;
+    headers?: Record<string, string>;
+    batchSize?: number;
+  }): Promise<{ success: boolean }>;
+
+  /**
+   * Android: estado del outbox nativo (profundidad de cola y latencia del último envío)
+   */
+  getSyncStatus(): Promise<SyncStatus>;
 
   /**
    * Configura el estado de primer plano de la app para el manejo inteligente de notificaciones
@@ -42,6 +236,30 @@ export interface NativeTimerPlugin {
    */
   resetNotificationState(): Promise<{ success: boolean }>;
 
+  /**
+   * Android: contadores de actualizaciones de notificación enviadas y omitidas por no tener cambios visibles
+   */
+  getNotificationStats(): Promise<{ posted: number; skipped: number }>;
+
+  /**
+   * Android: métricas del servicio (contadores y latencias en µs). Con `reset` se ponen a cero tras leerlas
+   */
+  getMetrics(options?: { reset?: boolean }): Promise<TimerMetrics>;
+
+  /**
+   * Android: nivel de log nativo (por defecto 'debug' en builds debug y 'warn' en release) y
+   * nº de eventos recientes que se guardan en memoria para informes de error (0 lo desactiva)
+   */
+  setLogLevel(options: {
+    level: 'debug' | 'info' | 'warn' | 'error' | 'none';
+    ringBufferSize?: number;
+  }): Promise<{ success: boolean }>;
+
+  /**
+   * Android: eventos de log guardados en el buffer circular, del más antiguo al más reciente
+   */
+  getRecentLogs(): Promise<{ logs: string[] }>;
+
   /**
    * iOS: Verifica si Live Activities están disponibles (iOS 16.2+)
    */
@@ -78,13 +296,23 @@ export interface NativeTimerPlugin {
   stopAllLiveActivities(): Promise<{ success: boolean }>;
 
   /**
-   * Escucha los eventos del timer (cada 30 segundos)
+   * Android: intervalo mínimo entre eventos timerUpdate del mismo timer (por defecto 0: uno por cambio visible)
+   */
+  setTimerUpdateRate(options: { minIntervalMs: number }): Promise<{ success: boolean }>;
+
+  /**
+   * Escucha los eventos del timer (en cada cambio de minuto del tiempo mostrado)
    */
   addListener(
     eventName: 'timerUpdate',
-    listenerFunc: (data: { elapsedTime: number; formattedTime: string }) => void,
+    listenerFunc: (data: { id?: string; elapsedTime: number; formattedTime: string }) => void,
   ): Promise<any>;
 
+  /**
+   * Android: un umbral de jornada de `rules` se ha superado. Se retiene hasta que haya listener
+   */
+  addListener(eventName: 'timerThreshold', listenerFunc: (data: TimerThresholdEvent) => void): Promise<any>;
+
   /**
    * Remueve todos los listeners
    */
@@ -1,19 +1,35 @@
 import { WebPlugin } from '@capacitor/core';
-import type { NativeTimerPlugin } from './definitions';
+import type {
+  NativeTimerPlugin,
+  SessionSummary,
+  SyncStatus,
+  TimerCommand,
+  TimerInfo,
+  TimerMetrics,
+  TimerSnapshot,
+} from './definitions';
 
 export class NativeTimerWeb extends WebPlugin implements NativeTimerPlugin {
   private startTime: number = 0;
   private isRunning: boolean = false;
   private interval?: number;
+  private title: string = '';
+  private pausedAt?: number;
 
-  async startTimer(options: { startTime: number; title: string; body: string }): Promise<{ success: boolean }> {
+  async startTimer(options: { id?: string; startTime: number; title: string; body: string }): Promise<{ success: boolean }> {
     console.log('NativeTimer Web: startTimer called', options);
+    if (this.isRunning) {
+      // En web solo hay un timer; un nuevo start solo actualiza el título
+      this.title = options.title;
+      return { success: true };
+    }
     this.startTime = options.startTime;
+    this.title = options.title;
     this.isRunning = true;
     
     // Simular actualizaciones para web
     this.interval = window.setInterval(() => {
-      const elapsed = Date.now() - this.startTime;
+      const elapsed = this.elapsed();
       const hours = Math.floor(elapsed / 3600000);
       const minutes = Math.floor((elapsed % 3600000) / 60000);
       const seconds = Math.floor((elapsed % 60000) / 1000);
@@ -28,9 +44,10 @@ export class NativeTimerWeb extends WebPlugin implements NativeTimerPlugin {
     return { success: true };
   }
 
-  async stopTimer(): Promise<{ success: boolean }> {
-    console.log('NativeTimer Web: stopTimer called');
+  async stopTimer(options?: { id?: string }): Promise<{ success: boolean }> {
+    console.log('NativeTimer Web: stopTimer called', options);
     this.isRunning = false;
+    this.pausedAt = undefined;
     if (this.interval) {
       window.clearInterval(this.interval);
       this.interval = undefined;
@@ -38,7 +55,25 @@ export class NativeTimerWeb extends WebPlugin implements NativeTimerPlugin {
     return { success: true };
   }
 
-  async updateNotification(options: { title: string; body: string }): Promise<{ success: boolean }> {
+  async pauseTimer(options?: { id?: string }): Promise<{ success: boolean }> {
+    console.log('NativeTimer Web: pauseTimer called', options);
+    if (this.isRunning && this.pausedAt === undefined) {
+      this.pausedAt = Date.now();
+    }
+    return { success: true };
+  }
+
+  async resumeTimer(options?: { id?: string }): Promise<{ success: boolean }> {
+    console.log('NativeTimer Web: resumeTimer called', options);
+    if (this.pausedAt !== undefined) {
+      // Desplazar el inicio para descontar la pausa
+      this.startTime += Date.now() - this.pausedAt;
+      this.pausedAt = undefined;
+    }
+    return { success: true };
+  }
+
+  async updateNotification(options: { id?: string; title: string; body: string }): Promise<{ success: boolean }> {
     console.log('NativeTimer Web: updateNotification called', options);
     // En web, solo log
     return { success: true };
@@ -48,9 +83,102 @@ export class NativeTimerWeb extends WebPlugin implements NativeTimerPlugin {
     return { isRunning: this.isRunning };
   }
 
-  async getElapsedTime(): Promise<{ elapsedTime: number }> {
+  async getElapsedTime(_options?: { id?: string }): Promise<{ elapsedTime: number }> {
     if (!this.isRunning) return { elapsedTime: 0 };
-    return { elapsedTime: Date.now() - this.startTime };
+    return { elapsedTime: this.elapsed() };
+  }
+
+  async listTimers(): Promise<{ timers: TimerInfo[] }> {
+    if (!this.isRunning) return { timers: [] };
+    return {
+      timers: [
+        {
+          id: 'default',
+          title: this.title,
+          startTime: this.startTime,
+          elapsedTime: this.elapsed(),
+          primaryColor: '#0045a5',
+          paused: this.pausedAt !== undefined,
+        },
+      ],
+    };
+  }
+
+  async getTimerSnapshot(): Promise<TimerSnapshot> {
+    const { timers } = await this.listTimers();
+    return {
+      isRunning: this.isRunning,
+      appInForeground: true,
+      timers: timers.map((timer) => ({
+        ...timer,
+        notificationDismissed: false,
+        segments: [{ start: this.startTime, end: this.pausedAt }],
+      })),
+      metrics: { ticks: 0, posted: 0, skipped: 0, tick: { count: 0, p50: 0, p90: 0, p99: 0, max: 0 } },
+    };
+  }
+
+  async applyCommands(options: {
+    commands: TimerCommand[];
+    snapshot?: boolean;
+  }): Promise<{ success: boolean; error?: string; index?: number } & Partial<TimerSnapshot>> {
+    for (const command of options.commands) {
+      switch (command.type) {
+        case 'start':
+          await this.startTimer({
+            id: command.id,
+            startTime: command.startTime ?? Date.now(),
+            title: command.title ?? 'Timer activo',
+            body: command.body ?? '00:00:00',
+          });
+          break;
+        case 'stop':
+          await this.stopTimer({ id: command.id });
+          break;
+        case 'pause':
+          await this.pauseTimer({ id: command.id });
+          break;
+        case 'resume':
+          await this.resumeTimer({ id: command.id });
+          break;
+        case 'updateTitle':
+          await this.updateNotification({ id: command.id, title: command.title, body: '' });
+          break;
+        default:
+          // setForeground / resetNotificationState no aplican en web
+          break;
+      }
+    }
+    return options.snapshot ? { success: true, ...(await this.getTimerSnapshot()) } : { success: true };
+  }
+
+  async getSessionSummary(options?: { from?: number; to?: number }): Promise<SessionSummary> {
+    console.log('NativeTimer Web: getSessionSummary called', options);
+    // En web no hay histórico local
+    return { activeTime: 0, sessionCount: 0, today: 0, thisWeek: 0 };
+  }
+
+  async exportSessions(options?: {
+    format?: 'csv' | 'ndjson';
+    from?: number;
+    to?: number;
+  }): Promise<{ success: boolean; path?: string; rows?: number; error?: string }> {
+    console.log('NativeTimer Web: exportSessions - not supported', options);
+    return { success: false, error: 'not_supported' };
+  }
+
+  async configureSync(options: {
+    endpoint: string | null;
+    headers?: Record<string, string>;
+    batchSize?: number;
+  }): Promise<{ success: boolean }> {
+    console.log('NativeTimer Web: configureSync - not supported', options);
+    return { success: false };
+  }
+
+  async getSyncStatus(): Promise<SyncStatus> {
+    // En web no hay outbox nativo
+    return { queueDepth: 0, lastFlushLatencyMs: -1, lastSuccessAt: 0, consecutiveFailures: 0, droppedEvents: 0, awaitingCredentials: false };
   }
 
   async setAppForegroundState(options: { inForeground: boolean }): Promise<{ success: boolean }> {
@@ -65,6 +193,42 @@ export class NativeTimerWeb extends WebPlugin implements NativeTimerPlugin {
     return { success: true };
   }
 
+  async getNotificationStats(): Promise<{ posted: number; skipped: number }> {
+    // En web no hay notificaciones nativas
+    return { posted: 0, skipped: 0 };
+  }
+
+  async getMetrics(_options?: { reset?: boolean }): Promise<TimerMetrics> {
+    // En web no hay servicio nativo que medir
+    const empty = { count: 0, p50: 0, p90: 0, p99: 0, max: 0 };
+    return {
+      ticks: 0, posted: 0, skipped: 0, dismissals: 0, restarts: 0, coalesced: 0, rateLimited: 0,
+      tick: empty, render: empty, notify: empty, startup: empty, startupRich: empty,
+    };
+  }
+
+  async setLogLevel(options: {
+    level: 'debug' | 'info' | 'warn' | 'error' | 'none';
+    ringBufferSize?: number;
+  }): Promise<{ success: boolean }> {
+    console.log('NativeTimer Web: setLogLevel called', options);
+    return { success: true };
+  }
+
+  async getRecentLogs(): Promise<{ logs: string[] }> {
+    return { logs: [] };
+  }
+
+  async setTimerUpdateRate(options: { minIntervalMs: number }): Promise<{ success: boolean }> {
+    console.log('NativeTimer Web: setTimerUpdateRate called', options);
+    // En web el intervalo de simulación es fijo
+    return { success: true };
+  }
+
+  private elapsed(): number {
+    return (this.pausedAt ?? Date.now()) - this.startTime;
+  }
+
   // MARK: - Live Activities Support (iOS only - Web stubs)
 
   async areLiveActivitiesAvailable(): Promise<{ available: boolean }> {